@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationImpl;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration values shared by the configuration source benchmarks and the stand-ins serving them.
+ *
+ * @since 1.4.0
+ */
+public class BenchmarkData {
+
+    public static final String NAMESPACE = "benchmarks";
+
+    public static final String STRING_KEY = "rest-config.string-property";
+    public static final String INTEGER_KEY = "rest-config.integer-property";
+    public static final String BOOLEAN_KEY = "rest-config.boolean-property";
+    public static final String MISSING_KEY = "rest-config.missing-property";
+    public static final String LIST_KEY = "rest-config.list";
+    public static final String MAP_KEY = "rest-config.map";
+
+    public static final int LIST_SIZE = 10;
+    public static final int MAP_SIZE = 10;
+
+    private BenchmarkData() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns configuration values stored in the stand-ins.
+     *
+     * @return key/value pairs, keys in KumuluzEE format
+     */
+    public static Map<String, String> getValues() {
+
+        Map<String, String> values = new HashMap<>();
+
+        values.put(STRING_KEY, "Monday");
+        values.put(INTEGER_KEY, "42");
+        values.put(BOOLEAN_KEY, "true");
+
+        for (int i = 0; i < LIST_SIZE; i++) {
+            values.put(LIST_KEY + "[" + i + "]", "item" + i);
+        }
+
+        for (int i = 0; i < MAP_SIZE; i++) {
+            values.put(MAP_KEY + ".key" + i, "value" + i);
+        }
+
+        return values;
+    }
+
+    /**
+     * Initializes KumuluzEE configuration framework with the benchmark namespace and given properties. Properties are
+     * passed as system properties, since those are read by the default configuration sources.
+     *
+     * @param properties configuration properties, e.g. hosts of the stand-in
+     */
+    public static void initializeConfiguration(Map<String, String> properties) {
+
+        System.setProperty("kumuluzee.config.namespace", NAMESPACE);
+        properties.forEach(System::setProperty);
+
+        ConfigurationUtil.initialize(new ConfigurationImpl());
+    }
+}
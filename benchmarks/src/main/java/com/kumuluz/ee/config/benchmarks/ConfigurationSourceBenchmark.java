@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks;
+
+import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.configuration.ConfigurationSource;
+import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end read path benchmarks of a configuration source, running against a local in-process stand-in of the
+ * configuration server. Each benchmark is run with and without the configuration cache.
+ *
+ * @since 1.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ConfigurationSourceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    protected ConfigurationSource configurationSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        Map<String, String> properties = new HashMap<>(startStandIn(BenchmarkData.NAMESPACE,
+                BenchmarkData.getValues()));
+        properties.put("kumuluzee.config.cache.enabled", String.valueOf(cache));
+
+        BenchmarkData.initializeConfiguration(properties);
+
+        configurationSource = createConfigurationSource(new EeConfig.Builder().build());
+        configurationSource.init(new ConfigurationDispatcher());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        stopStandIn();
+    }
+
+    /**
+     * Starts the stand-in and stores the given values in it.
+     *
+     * @param namespace namespace of the configuration source
+     * @param values    key/value pairs, keys in KumuluzEE format
+     * @return configuration properties required by the configuration source to connect to the stand-in
+     */
+    protected abstract Map<String, String> startStandIn(String namespace, Map<String, String> values)
+            throws Exception;
+
+    protected abstract void stopStandIn() throws Exception;
+
+    protected abstract ConfigurationSource createConfigurationSource(EeConfig eeConfig);
+
+    @Benchmark
+    public Optional<String> get() {
+        return configurationSource.get(BenchmarkData.STRING_KEY);
+    }
+
+    @Benchmark
+    public Optional<String> getMissing() {
+        return configurationSource.get(BenchmarkData.MISSING_KEY);
+    }
+
+    @Benchmark
+    public Optional<Integer> getInteger() {
+        return configurationSource.getInteger(BenchmarkData.INTEGER_KEY);
+    }
+
+    @Benchmark
+    public Optional<Integer> getInvalidInteger() {
+        return configurationSource.getInteger(BenchmarkData.STRING_KEY);
+    }
+
+    @Benchmark
+    public Optional<Integer> getListSize() {
+        return configurationSource.getListSize(BenchmarkData.LIST_KEY);
+    }
+
+    @Benchmark
+    public Optional<List<String>> getMapKeys() {
+        return configurationSource.getMapKeys(BenchmarkData.MAP_KEY);
+    }
+
+    @Benchmark
+    public Integer getOrdinal() {
+        return configurationSource.getOrdinal();
+    }
+}
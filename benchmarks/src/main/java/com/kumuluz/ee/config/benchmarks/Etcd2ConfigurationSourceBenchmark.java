@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks;
+
+import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.benchmarks.standins.EtcdStandIn;
+import com.kumuluz.ee.config.etcd.Etcd2ConfigurationSource;
+import com.kumuluz.ee.configuration.ConfigurationSource;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Read path benchmarks of {@link Etcd2ConfigurationSource}.
+ *
+ * @since 1.4.0
+ */
+public class Etcd2ConfigurationSourceBenchmark extends ConfigurationSourceBenchmark {
+
+    private EtcdStandIn standIn;
+
+    @Override
+    protected Map<String, String> startStandIn(String namespace, Map<String, String> values) throws Exception {
+
+        standIn = new EtcdStandIn(namespace, values);
+        standIn.start();
+
+        return Collections.singletonMap("kumuluzee.config.etcd.hosts", standIn.getUrl());
+    }
+
+    @Override
+    protected void stopStandIn() throws Exception {
+        standIn.stop();
+    }
+
+    @Override
+    protected ConfigurationSource createConfigurationSource(EeConfig eeConfig) {
+        return new Etcd2ConfigurationSource(eeConfig);
+    }
+}
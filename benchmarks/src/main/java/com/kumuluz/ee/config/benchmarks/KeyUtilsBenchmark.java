@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks;
+
+import com.kumuluz.ee.config.utils.KeyPathCache;
+import com.kumuluz.ee.config.utils.KeyUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of translations between KumuluzEE keys and keys of the configuration servers, computed on each call and
+ * memoised in {@link KeyPathCache}.
+ *
+ * @since 1.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyUtilsBenchmark {
+
+    @Param({"rest-config.string-property", "rest-config.list[3]", "rest-config.map.nested[12].key"})
+    public String key;
+
+    private String etcdKey;
+    private String consulKey;
+    private String zookeeperKey;
+
+    private KeyPathCache etcdKeyPaths;
+    private KeyPathCache consulKeyPaths;
+    private KeyPathCache zookeeperKeyPaths;
+
+    @Setup
+    public void setUp() {
+        etcdKey = "/" + BenchmarkData.NAMESPACE + "/" + KeyUtils.parseKeyNameForEtcd(key);
+        consulKey = BenchmarkData.NAMESPACE + "/" + KeyUtils.parseKeyNameForConsul(key);
+        zookeeperKey = "/" + BenchmarkData.NAMESPACE + KeyUtils.parseKeyNameForZookeeper(key);
+
+        etcdKeyPaths = KeyPathCache.forEtcd(BenchmarkData.NAMESPACE);
+        consulKeyPaths = KeyPathCache.forConsul(BenchmarkData.NAMESPACE);
+        zookeeperKeyPaths = KeyPathCache.forZookeeper(BenchmarkData.NAMESPACE);
+    }
+
+    @Benchmark
+    public String parseKeyNameForEtcd() {
+        return KeyUtils.parseKeyNameForEtcd(key);
+    }
+
+    @Benchmark
+    public String parseKeyNameFromEtcd() {
+        return KeyUtils.parseKeyNameFromEtcd(BenchmarkData.NAMESPACE, etcdKey);
+    }
+
+    @Benchmark
+    public String parseKeyNameForConsul() {
+        return KeyUtils.parseKeyNameForConsul(key);
+    }
+
+    @Benchmark
+    public String parseKeyNameFromConsul() {
+        return KeyUtils.parseKeyNameFromConsul(BenchmarkData.NAMESPACE, consulKey);
+    }
+
+    @Benchmark
+    public String parseKeyNameForZookeeper() {
+        return KeyUtils.parseKeyNameForZookeeper(key);
+    }
+
+    @Benchmark
+    public String parseKeyNameFromZookeeper() {
+        return KeyUtils.parseKeyNameFromZookeeper(BenchmarkData.NAMESPACE, zookeeperKey);
+    }
+
+    @Benchmark
+    public String cachedEtcdPath() {
+        return etcdKeyPaths.getPath(key);
+    }
+
+    @Benchmark
+    public String cachedEtcdKey() {
+        return etcdKeyPaths.getKey(etcdKey);
+    }
+
+    @Benchmark
+    public String cachedConsulPath() {
+        return consulKeyPaths.getPath(key);
+    }
+
+    @Benchmark
+    public String cachedConsulKey() {
+        return consulKeyPaths.getKey(consulKey);
+    }
+
+    @Benchmark
+    public String cachedZookeeperPath() {
+        return zookeeperKeyPaths.getPath(key);
+    }
+
+    @Benchmark
+    public String cachedZookeeperKey() {
+        return zookeeperKeyPaths.getKey(zookeeperKey);
+    }
+}
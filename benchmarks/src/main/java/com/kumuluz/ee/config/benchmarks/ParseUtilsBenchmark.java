@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks;
+
+import com.kumuluz.ee.config.utils.ParseUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of typed configuration value parsers.
+ *
+ * @since 1.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseUtilsBenchmark {
+
+    private Optional<String> booleanValue = Optional.of("true");
+    private Optional<String> integerValue = Optional.of("42");
+    private Optional<String> longValue = Optional.of("9007199254740993");
+    private Optional<String> doubleValue = Optional.of("3.141592653589793");
+    private Optional<String> floatValue = Optional.of("2.71828");
+    private Optional<String> invalidValue = Optional.of("forty-two");
+
+    @Benchmark
+    public Optional<Boolean> parseBoolean() {
+        return ParseUtils.parseOptionalStringToOptionalBoolean(booleanValue);
+    }
+
+    @Benchmark
+    public Optional<Integer> parseInteger() {
+        return ParseUtils.parseOptionalStringToOptionalInteger(integerValue);
+    }
+
+    @Benchmark
+    public Optional<Integer> parseInvalidInteger() {
+        return ParseUtils.parseOptionalStringToOptionalInteger(invalidValue);
+    }
+
+    @Benchmark
+    public Optional<Long> parseLong() {
+        return ParseUtils.parseOptionalStringToOptionalLong(longValue);
+    }
+
+    @Benchmark
+    public Optional<Double> parseDouble() {
+        return ParseUtils.parseOptionalStringToOptionalDouble(doubleValue);
+    }
+
+    @Benchmark
+    public Optional<Double> parseInvalidDouble() {
+        return ParseUtils.parseOptionalStringToOptionalDouble(invalidValue);
+    }
+
+    @Benchmark
+    public Optional<Float> parseFloat() {
+        return ParseUtils.parseOptionalStringToOptionalFloat(floatValue);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks.standins;
+
+import com.kumuluz.ee.config.utils.KeyUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the Consul agent KV API. Serves read requests for a fixed set of values, writes are not
+ * supported. Values never change, so blocking queries waiting for a newer index are held open until the stand-in is
+ * stopped.
+ *
+ * @since 1.4.0
+ */
+public class ConsulStandIn {
+
+    private static final String KV_PATH = "/v1/kv/";
+    private static final String AGENT_SELF_PATH = "/v1/agent/self";
+    private static final long INDEX = 1;
+
+    private final NavigableMap<String, String> values = new TreeMap<>();
+
+    private final List<HttpExchange> pendingWatches = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param namespace namespace of the configuration source
+     * @param values    key/value pairs, keys in KumuluzEE format
+     */
+    public ConsulStandIn(String namespace, Map<String, String> values) {
+        values.forEach((k, v) -> this.values.put(namespace + "/" + KeyUtils.parseKeyNameForConsul(k), v));
+    }
+
+    public void start() throws IOException {
+
+        executor = Executors.newCachedThreadPool();
+
+        server = StandInUtils.createServer();
+        server.createContext(KV_PATH, this::handleKv);
+        server.createContext(AGENT_SELF_PATH, exchange -> StandInUtils.respond(exchange, 200, "{}"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        pendingWatches.forEach(HttpExchange::close);
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handleKv(HttpExchange exchange) throws IOException {
+
+        String key = exchange.getRequestURI().getPath().substring(KV_PATH.length());
+        Map<String, String> query = StandInUtils.parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (query.containsKey("index") && Long.parseLong(query.get("index")) >= INDEX) {
+            pendingWatches.add(exchange);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("X-Consul-Index", String.valueOf(INDEX));
+        exchange.getResponseHeaders().set("X-Consul-Knownleader", "true");
+        exchange.getResponseHeaders().set("X-Consul-Lastcontact", "0");
+
+        StringJoiner body = new StringJoiner(",", "[", "]");
+        int count = 0;
+
+        if (query.containsKey("keys")) {
+            String separator = query.get("separator");
+            Set<String> keys = new TreeSet<>();
+
+            for (String k : getPrefixed(key).keySet()) {
+                int separatorIndex = separator == null || separator.isEmpty() ? -1 :
+                        k.indexOf(separator, key.length());
+                keys.add(separatorIndex < 0 ? k : k.substring(0, separatorIndex + separator.length()));
+            }
+            for (String k : keys) {
+                body.add(StandInUtils.quote(k));
+                count++;
+            }
+        } else if (query.containsKey("recurse")) {
+            for (Map.Entry<String, String> entry : getPrefixed(key).entrySet()) {
+                body.add(toValue(entry.getKey(), entry.getValue()));
+                count++;
+            }
+        } else if (values.containsKey(key)) {
+            body.add(toValue(key, values.get(key)));
+            count++;
+        }
+
+        if (count > 0) {
+            StandInUtils.respond(exchange, 200, body.toString());
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        }
+    }
+
+    private SortedMap<String, String> getPrefixed(String prefix) {
+        // Consul treats prefixes as plain strings, Character.MAX_VALUE bounds all keys starting with the prefix
+        return values.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private String toValue(String key, String value) {
+        return "{\"LockIndex\":0,\"Key\":" + StandInUtils.quote(key) + ",\"Flags\":0,\"Value\":" +
+                StandInUtils.quote(Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8))) +
+                ",\"CreateIndex\":" + INDEX + ",\"ModifyIndex\":" + INDEX + "}";
+    }
+}
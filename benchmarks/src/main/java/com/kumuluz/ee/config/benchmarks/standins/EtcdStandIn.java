@@ -0,0 +1,156 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks.standins;
+
+import com.kumuluz.ee.config.utils.KeyUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the etcd v2 keys API. Serves read requests for a fixed set of values, writes are not
+ * supported. Values never change, so watch requests are held open until the stand-in is stopped.
+ *
+ * @since 1.4.0
+ */
+public class EtcdStandIn {
+
+    private static final String KEYS_PATH = "/v2/keys";
+    private static final long INDEX = 1;
+
+    private final NavigableMap<String, String> values = new TreeMap<>();
+
+    private final List<HttpExchange> pendingWatches = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param namespace namespace of the configuration source
+     * @param values    key/value pairs, keys in KumuluzEE format
+     */
+    public EtcdStandIn(String namespace, Map<String, String> values) throws UnsupportedEncodingException {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = URLDecoder.decode(KeyUtils.parseKeyNameForEtcd(entry.getKey()), "UTF-8");
+            this.values.put("/" + namespace + "/" + key, entry.getValue());
+        }
+    }
+
+    public void start() throws IOException {
+
+        executor = Executors.newCachedThreadPool();
+
+        server = StandInUtils.createServer();
+        server.createContext(KEYS_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        pendingWatches.forEach(HttpExchange::close);
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        String key = exchange.getRequestURI().getPath().substring(KEYS_PATH.length());
+        if (key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        Map<String, String> query = StandInUtils.parseQuery(exchange.getRequestURI().getRawQuery());
+        boolean recursive = "true".equals(query.get("recursive"));
+
+        if ("true".equals(query.get("wait"))) {
+            pendingWatches.add(exchange);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("X-Etcd-Index", String.valueOf(INDEX));
+        exchange.getResponseHeaders().set("X-Raft-Index", String.valueOf(INDEX));
+        exchange.getResponseHeaders().set("X-Raft-Term", "1");
+
+        String value = values.get(key);
+        if (value != null) {
+            StandInUtils.respond(exchange, 200, "{\"action\":\"get\",\"node\":" + toValueNode(key, value) + "}");
+            return;
+        }
+
+        SortedMap<String, String> subtree = getSubtree(key);
+        if (!subtree.isEmpty()) {
+            StandInUtils.respond(exchange, 200, "{\"action\":\"get\",\"node\":" +
+                    toDirNode(key, subtree, recursive) + "}");
+        } else {
+            StandInUtils.respond(exchange, 404, "{\"errorCode\":100,\"message\":\"Key not found\",\"cause\":" +
+                    StandInUtils.quote(key) + ",\"index\":" + INDEX + "}");
+        }
+    }
+
+    private SortedMap<String, String> getSubtree(String key) {
+        // '0' directly follows '/', so the range contains exactly the keys nested under the given key
+        return values.subMap(key + "/", key + "0");
+    }
+
+    private String toValueNode(String key, String value) {
+        return "{\"key\":" + StandInUtils.quote(key) + ",\"value\":" + StandInUtils.quote(value) +
+                ",\"modifiedIndex\":" + INDEX + ",\"createdIndex\":" + INDEX + "}";
+    }
+
+    private String toDirNode(String key, SortedMap<String, String> subtree, boolean recursive) {
+
+        StringJoiner nodes = new StringJoiner(",", "[", "]");
+        Set<String> dirs = new HashSet<>();
+
+        for (Map.Entry<String, String> entry : subtree.entrySet()) {
+            String rest = entry.getKey().substring(key.length() + 1);
+            int separator = rest.indexOf('/');
+
+            if (separator < 0) {
+                nodes.add(toValueNode(entry.getKey(), entry.getValue()));
+            } else {
+                String dir = key + "/" + rest.substring(0, separator);
+                if (dirs.add(dir)) {
+                    if (recursive) {
+                        nodes.add(toDirNode(dir, getSubtree(dir), true));
+                    } else {
+                        nodes.add("{\"key\":" + StandInUtils.quote(dir) + ",\"dir\":true,\"modifiedIndex\":" +
+                                INDEX + ",\"createdIndex\":" + INDEX + "}");
+                    }
+                }
+            }
+        }
+
+        return "{\"key\":" + StandInUtils.quote(key) + ",\"dir\":true,\"nodes\":" + nodes +
+                ",\"modifiedIndex\":" + INDEX + ",\"createdIndex\":" + INDEX + "}";
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks.standins;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helpers shared by the HTTP based stand-ins.
+ *
+ * @since 1.4.0
+ */
+class StandInUtils {
+
+    private StandInUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static InetSocketAddress getLoopbackAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    static HttpServer createServer() throws IOException {
+        // headers and body are written separately, without TCP_NODELAY delayed ACKs dominate the measurements
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        return HttpServer.create(getLoopbackAddress(), 0);
+    }
+
+    static Map<String, String> parseQuery(String query) {
+
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator < 0) {
+                parameters.put(parameter, "");
+            } else {
+                parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+            }
+        }
+
+        return parameters;
+    }
+
+    static String quote(String value) {
+
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
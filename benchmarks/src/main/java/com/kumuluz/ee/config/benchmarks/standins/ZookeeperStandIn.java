@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.benchmarks.standins;
+
+import com.kumuluz.ee.config.utils.KeyUtils;
+import org.apache.zookeeper.*;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Embedded single node ZooKeeper server populated with a fixed set of values.
+ *
+ * @since 1.4.0
+ */
+public class ZookeeperStandIn {
+
+    private static final int TICK_TIME_MS = 2000;
+    private static final int MAX_CLIENT_CONNECTIONS = 100;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private Path dataDir;
+    private ServerCnxnFactory serverCnxnFactory;
+
+    /**
+     * @param namespace namespace of the configuration source
+     * @param values    key/value pairs, keys in KumuluzEE format
+     */
+    public ZookeeperStandIn(String namespace, Map<String, String> values) {
+        values.forEach((k, v) -> this.values.put("/" + namespace + KeyUtils.parseKeyNameForZookeeper(k), v));
+    }
+
+    public void start() throws IOException, InterruptedException, KeeperException {
+
+        dataDir = Files.createTempDirectory("zookeeper-stand-in");
+        File dataDirFile = dataDir.toFile();
+
+        serverCnxnFactory = ServerCnxnFactory.createFactory(StandInUtils.getLoopbackAddress(),
+                MAX_CLIENT_CONNECTIONS);
+        serverCnxnFactory.startup(new ZooKeeperServer(dataDirFile, dataDirFile, TICK_TIME_MS));
+
+        CountDownLatch connected = new CountDownLatch(1);
+        ZooKeeper zooKeeper = new ZooKeeper(getConnectString(), TICK_TIME_MS, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+
+        try {
+            if (!connected.await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Could not connect to the embedded ZooKeeper server.");
+            }
+
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                createParents(zooKeeper, entry.getKey());
+                zooKeeper.create(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8),
+                        ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            }
+        } finally {
+            zooKeeper.close();
+        }
+    }
+
+    public void stop() throws IOException {
+
+        serverCnxnFactory.shutdown();
+
+        try (Stream<Path> paths = Files.walk(dataDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    public String getConnectString() {
+        return "127.0.0.1:" + serverCnxnFactory.getLocalPort();
+    }
+
+    private void createParents(ZooKeeper zooKeeper, String path) throws KeeperException, InterruptedException {
+
+        int separator = path.indexOf('/', 1);
+        while (separator > 0) {
+            try {
+                zooKeeper.create(path.substring(0, separator), null, ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                        CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException e) {
+                // created for another value
+            }
+            separator = path.indexOf('/', separator + 1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config;
+
+import com.kumuluz.ee.configuration.ConfigurationSource;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Configuration source, which can read configuration values without blocking the calling thread.
+ *
+ * Returned futures are completed on the I/O threads of the configuration server client, so dependent stages should not
+ * block. As with the synchronous methods, errors are logged and reported as absent values; futures are never completed
+ * exceptionally.
+ *
+ * @since 1.4.0
+ */
+public interface AsyncConfigurationSource extends ConfigurationSource {
+
+    /**
+     * Asynchronous variant of {@link #get(String)}.
+     *
+     * @param key key in KumuluzEE format
+     * @return future, completed with the value or empty optional if the key is missing
+     */
+    CompletableFuture<Optional<String>> getAsync(String key);
+
+    /**
+     * Asynchronous variant of {@link #getListSize(String)}.
+     *
+     * @param key key in KumuluzEE format
+     * @return future, completed with the list size or empty optional if the key is not a list
+     */
+    CompletableFuture<Optional<Integer>> getListSizeAsync(String key);
+
+    /**
+     * Asynchronous variant of {@link #getMapKeys(String)}.
+     *
+     * @param key key in KumuluzEE format
+     * @return future, completed with the map keys or empty optional if the key is not a map
+     */
+    CompletableFuture<Optional<List<String>>> getMapKeysAsync(String key);
+}
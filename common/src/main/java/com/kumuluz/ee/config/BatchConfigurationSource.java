@@ -0,0 +1,43 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config;
+
+import com.kumuluz.ee.configuration.ConfigurationSource;
+
+import java.util.Map;
+
+/**
+ * Configuration source, which can write multiple configuration values in a batch, using far fewer requests to the
+ * configuration server than writing the values one by one.
+ *
+ * @since 1.4.0
+ */
+public interface BatchConfigurationSource extends ConfigurationSource {
+
+    /**
+     * Writes all given values. Existing values are overwritten, missing keys are created.
+     *
+     * @param values key/value pairs, keys in KumuluzEE format
+     * @return result of the batch write
+     */
+    BatchWriteResult set(Map<String, String> values);
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of a batch write to a configuration source.
+ *
+ * @since 1.4.0
+ */
+public class BatchWriteResult {
+
+    private final Set<String> writtenKeys;
+    private final Map<String, String> failedKeys;
+    private final int requests;
+
+    /**
+     * @param writtenKeys keys, which were written
+     * @param failedKeys  keys, which were not written, with the reason of the failure
+     * @param requests    number of requests made to the configuration server
+     */
+    public BatchWriteResult(Collection<String> writtenKeys, Map<String, String> failedKeys, int requests) {
+        this.writtenKeys = Collections.unmodifiableSet(new LinkedHashSet<>(writtenKeys));
+        this.failedKeys = Collections.unmodifiableMap(new HashMap<>(failedKeys));
+        this.requests = requests;
+    }
+
+    public static BatchWriteResult failed(Collection<String> keys, String reason, int requests) {
+
+        Map<String, String> failedKeys = new HashMap<>();
+        keys.forEach(key -> failedKeys.put(key, reason));
+
+        return new BatchWriteResult(Collections.emptySet(), failedKeys, requests);
+    }
+
+    public Set<String> getWrittenKeys() {
+        return writtenKeys;
+    }
+
+    public Map<String, String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public boolean isSuccessful() {
+        return failedKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchWriteResult{written=" + writtenKeys.size() + ", failed=" + failedKeys.size() + ", requests=" +
+                requests + "}";
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.cache;
+
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * In-memory snapshot of configuration values stored in a configuration source namespace.
+ *
+ * Keys are stored in the KumuluzEE format (e.g. <code>rest-config.list[0]</code>). When the whole namespace has been
+ * loaded with {@link #load(Map)}, the snapshot is considered complete and keys missing from it are reported as
+ * absent without contacting the configuration server. Until then, reads fall through to the supplied loader and
+ * present values are remembered.
+ *
+ * Alongside the raw value, each key holds the result of the last typed read (e.g. <code>getInteger</code>), including
+ * failed parses, so repeated typed reads do not parse the value again. The typed result is dropped together with the
+ * raw value when the value changes.
+ *
+ * Cached keys are also indexed in a {@link KeyTrie}, so removal of nested keys touches only the affected keys and,
+ * once the snapshot is complete, map keys and list sizes are answered without contacting the configuration server.
+ * Changes of values and the index are serialized, reads are not blocked.
+ *
+ * With a {@link TtlPolicy} set, values expire after their TTL (stale-while-revalidate). An expired value is still
+ * returned immediately, while a single asynchronous refresh per key replaces it in the background.
+ *
+ * @since 1.4.0
+ */
+public class ConfigurationCache {
+
+    private final Map<String, Entry> values = new ConcurrentHashMap<>();
+    private final KeyTrie keyTrie = new KeyTrie();
+
+    private volatile boolean complete = false;
+
+    private volatile Runnable changeListener;
+
+    private final ConfigMetrics metrics;
+
+    private volatile TtlPolicy ttlPolicy;
+    private volatile Function<String, CompletableFuture<Optional<String>>> refresher;
+
+    public ConfigurationCache() {
+        this(null);
+    }
+
+    /**
+     * @param metrics metrics of the configuration source, cache hits and misses are counted there
+     */
+    public ConfigurationCache(ConfigMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Optional<String> get(String key, Function<String, Optional<String>> loader) {
+
+        Entry entry = getEntry(key, loader);
+
+        return (entry != null) ? entry.value : Optional.empty();
+    }
+
+    /**
+     * Returns value of the given key, parsed to the given type. Parsed value is remembered until the value of the key
+     * changes or it is read as a different type.
+     *
+     * @param key    key in KumuluzEE format
+     * @param loader loads the raw value from the configuration server, if it is not cached
+     * @param type   type of the parsed value
+     * @param parser parses the raw value, returns empty optional if the value cannot be parsed
+     * @param <T>    type of the parsed value
+     * @return parsed value or empty optional if the key is missing or its value cannot be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> get(String key, Function<String, Optional<String>> loader, Class<T> type,
+                               Function<Optional<String>, Optional<T>> parser) {
+
+        Entry entry = getEntry(key, loader);
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        TypedValue typedValue = entry.typedValue;
+        if (typedValue != null && typedValue.type == type) {
+            return (Optional<T>) typedValue.value;
+        }
+
+        Optional<T> parsed = parser.apply(entry.value);
+        entry.typedValue = new TypedValue(type, parsed);
+
+        return parsed;
+    }
+
+    private Entry getEntry(String key, Function<String, Optional<String>> loader) {
+
+        Entry entry = values.get(key);
+
+        if (entry != null || complete) {
+            countHit();
+            refreshIfExpired(key, entry);
+            return entry;
+        }
+
+        countMiss();
+        return putLoaded(key, loader.apply(key));
+    }
+
+    /**
+     * Returns names of direct children of the given key. Only cached keys are considered, so the result is accurate
+     * only if the cache is complete. Empty result is counted as a miss.
+     *
+     * @param key key in KumuluzEE format
+     * @return names of children or empty optional if the key has no children
+     */
+    public Optional<List<String>> getMapKeys(String key) {
+        return counted(keyTrie.getChildren(key));
+    }
+
+    /**
+     * Returns size of the list stored under the given key. Only cached keys are considered, so the result is accurate
+     * only if the cache is complete. Empty result is counted as a miss.
+     *
+     * @param key key in KumuluzEE format
+     * @return size of the list or empty optional if children of the key do not form a list
+     */
+    public Optional<Integer> getListSize(String key) {
+        return counted(keyTrie.getListSize(key));
+    }
+
+    private <T> Optional<T> counted(Optional<T> result) {
+        if (result.isPresent()) {
+            countHit();
+        } else {
+            countMiss();
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(String, Function)}. Cached values are returned in an already completed
+     * future.
+     *
+     * @param key    key in KumuluzEE format
+     * @param loader asynchronously loads the raw value from the configuration server, if it is not cached
+     * @return future, completed with the value or empty optional if the key is missing
+     */
+    public CompletableFuture<Optional<String>> getAsync(String key,
+                                                        Function<String, CompletableFuture<Optional<String>>> loader) {
+
+        Entry entry = values.get(key);
+
+        if (entry != null || complete) {
+            countHit();
+            refreshIfExpired(key, entry);
+            return CompletableFuture.completedFuture((entry != null) ? entry.value : Optional.empty());
+        }
+
+        countMiss();
+        return loader.apply(key).thenApply(loaded -> {
+            Entry loadedEntry = putLoaded(key, loaded);
+            return (loadedEntry != null) ? loadedEntry.value : Optional.empty();
+        });
+    }
+
+    /**
+     * Enables expiration of cached values. Expired values are returned as they are, until the refresh completes.
+     *
+     * @param ttlPolicy TTL of cached values
+     * @param refresher asynchronously loads the raw value from the configuration server, completes with empty optional
+     *                  if the key is not found and exceptionally if the value could not be read
+     */
+    public void setExpiration(TtlPolicy ttlPolicy, Function<String, CompletableFuture<Optional<String>>> refresher) {
+        this.ttlPolicy = ttlPolicy.isEnabled() ? ttlPolicy : null;
+        this.refresher = refresher;
+    }
+
+    /**
+     * Starts refresh of the given entry, if it has expired and is not being refreshed already.
+     */
+    private void refreshIfExpired(String key, Entry entry) {
+
+        TtlPolicy policy = ttlPolicy;
+        if (entry == null || policy == null) {
+            return;
+        }
+
+        long ttlMs = policy.getTtlMs(key);
+        if (ttlMs <= 0 || System.nanoTime() - entry.loadedAt < TimeUnit.MILLISECONDS.toNanos(ttlMs) ||
+                !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        refresher.apply(key).whenComplete((loaded, throwable) -> {
+            entry.refreshing.set(false);
+            // failed refresh keeps the expired value, it is refreshed again on the next read
+            if (throwable == null) {
+                refreshed(key, entry, loaded);
+            }
+        });
+    }
+
+    /**
+     * Stores the refreshed value, unless the entry was changed (e.g. by a watch) while it was refreshed. Key, which
+     * was not found on the configuration server, is removed. If the cache is complete, the key is then reported as
+     * missing without contacting the configuration server, otherwise the next read goes to the configuration server.
+     */
+    private void refreshed(String key, Entry entry, Optional<String> loaded) {
+
+        boolean changed;
+        synchronized (this) {
+            if (!loaded.isPresent()) {
+                changed = values.remove(key, entry);
+                if (changed) {
+                    keyTrie.remove(key);
+                }
+            } else if (loaded.equals(entry.value)) {
+                entry.loadedAt = System.nanoTime();
+                changed = false;
+            } else {
+                changed = values.replace(key, entry, new Entry(loaded));
+            }
+        }
+
+        if (changed) {
+            onChange();
+        }
+    }
+
+    private Entry putLoaded(String key, Optional<String> loaded) {
+
+        if (loaded.isPresent()) {
+            // value may have been changed by a watch in the meantime, that one takes precedence
+            Entry loadedEntry = new Entry(loaded);
+            synchronized (this) {
+                Entry previous = values.putIfAbsent(key, loadedEntry);
+                if (previous != null) {
+                    return previous;
+                }
+                keyTrie.add(key);
+            }
+            return loadedEntry;
+        }
+
+        return null;
+    }
+
+    public void put(String key, String value) {
+        if (value == null) {
+            remove(key);
+        } else if (putIfChanged(key, value)) {
+            onChange();
+        }
+    }
+
+    /**
+     * Removes key and all of its nested keys (e.g. <code>key.nested</code> and <code>key[0]</code>).
+     *
+     * @param key key in KumuluzEE format
+     */
+    public void remove(String key) {
+        Set<String> removedKeys;
+        synchronized (this) {
+            removedKeys = keyTrie.removeAll(key);
+            values.keySet().removeAll(removedKeys);
+        }
+
+        if (!removedKeys.isEmpty()) {
+            onChange();
+        }
+    }
+
+    /**
+     * Replaces the content of the cache with the given snapshot of the whole namespace. The change listener is
+     * invoked after the cache is marked complete, also when the first load changes no values.
+     *
+     * @param snapshot all key/value pairs in the namespace, keys in KumuluzEE format
+     * @return keys, which were changed or removed
+     */
+    public Set<String> load(Map<String, String> snapshot) {
+        Set<String> changedKeys = replace(null, snapshot);
+        boolean wasComplete = complete;
+        complete = true;
+
+        if (!changedKeys.isEmpty() || !wasComplete) {
+            onChange();
+        }
+
+        return changedKeys;
+    }
+
+    /**
+     * Replaces values of the given key and all of its nested keys with the given snapshot.
+     *
+     * @param key      key in KumuluzEE format or null for the whole namespace
+     * @param snapshot key/value pairs of the key and its nested keys, keys in KumuluzEE format
+     * @return keys, which were changed or removed
+     */
+    public Set<String> update(String key, Map<String, String> snapshot) {
+        Set<String> changedKeys = replace(key, snapshot);
+
+        if (!changedKeys.isEmpty()) {
+            onChange();
+        }
+
+        return changedKeys;
+    }
+
+    private Set<String> replace(String key, Map<String, String> snapshot) {
+
+        Set<String> changedKeys = new HashSet<>();
+
+        synchronized (this) {
+            for (String cachedKey : keyTrie.getKeys(key)) {
+                if (!snapshot.containsKey(cachedKey)) {
+                    values.remove(cachedKey);
+                    keyTrie.remove(cachedKey);
+                    changedKeys.add(cachedKey);
+                }
+            }
+
+            snapshot.forEach((k, v) -> {
+                if (putIfChanged(k, v)) {
+                    changedKeys.add(k);
+                }
+            });
+        }
+
+        return changedKeys;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns a copy of all cached values.
+     *
+     * @return cached key/value pairs, keys in KumuluzEE format
+     */
+    public Map<String, String> getValues() {
+
+        Map<String, String> copy = new HashMap<>();
+        values.forEach((k, entry) -> entry.value.ifPresent(v -> copy.put(k, v)));
+
+        return copy;
+    }
+
+    /**
+     * Sets listener, which is invoked after cached values were changed by a put, remove or update.
+     *
+     * @param changeListener listener or null to remove it
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void countHit() {
+        if (metrics != null) {
+            metrics.getCacheHits().inc();
+        }
+    }
+
+    private void countMiss() {
+        if (metrics != null) {
+            metrics.getCacheMisses().inc();
+        }
+    }
+
+    private void onChange() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Stores the value, unless the key already holds an equal value. Keeping the existing entry preserves its typed
+     * value, its TTL starts again.
+     */
+    private synchronized boolean putIfChanged(String key, String value) {
+
+        Entry entry = values.get(key);
+        if (entry != null && entry.value.get().equals(value)) {
+            entry.loadedAt = System.nanoTime();
+            return false;
+        }
+
+        values.put(key, new Entry(Optional.of(value)));
+        keyTrie.add(key);
+
+        return true;
+    }
+
+    private static class Entry {
+
+        private final Optional<String> value;
+
+        private volatile TypedValue typedValue;
+
+        private volatile long loadedAt = System.nanoTime();
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private Entry(Optional<String> value) {
+            this.value = value;
+        }
+    }
+
+    private static class TypedValue {
+
+        private final Class<?> type;
+        private final Optional<?> value;
+
+        private TypedValue(Class<?> type, Optional<?> value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.cache;
+
+import com.kumuluz.ee.config.utils.ListIndexes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Path trie of configuration keys in KumuluzEE format. Keys are split into segments at dots and before list indexes
+ * (e.g. <code>rest-config.list[0].name</code> is stored as <code>rest-config</code>, <code>list</code>,
+ * <code>[0]</code> and <code>name</code>), so a key, its children and its nested keys are found in time proportional
+ * to the depth of the key, regardless of the number of stored keys.
+ *
+ * Only keys with values are stored; nodes without values and without children are pruned. Mutations must be
+ * synchronized externally, lookups may run concurrently with a mutation.
+ *
+ * @since 1.4.0
+ */
+public class KeyTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Adds the given key.
+     *
+     * @param key key in KumuluzEE format
+     */
+    public void add(String key) {
+
+        Node node = root;
+        for (String segment : split(key)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        node.present = true;
+    }
+
+    /**
+     * Removes the given key. Its nested keys are retained.
+     *
+     * @param key key in KumuluzEE format
+     */
+    public void remove(String key) {
+
+        List<String> segments = split(key);
+        List<Node> path = find(segments);
+        if (path != null) {
+            path.get(segments.size()).present = false;
+            prune(segments, path);
+        }
+    }
+
+    /**
+     * Removes the given key and all of its nested keys.
+     *
+     * @param key key in KumuluzEE format
+     * @return removed keys
+     */
+    public Set<String> removeAll(String key) {
+
+        List<String> segments = split(key);
+        List<Node> path = find(segments);
+
+        Set<String> removed = new HashSet<>();
+        if (path != null) {
+            Node node = path.get(segments.size());
+            collectKeys(node, key, removed);
+
+            node.present = false;
+            node.children.clear();
+            prune(segments, path);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all keys.
+     */
+    public void clear() {
+        root.children.clear();
+    }
+
+    /**
+     * Returns the given key and all of its nested keys.
+     *
+     * @param key key in KumuluzEE format or null for all keys
+     * @return stored keys
+     */
+    public Set<String> getKeys(String key) {
+
+        Set<String> keys = new HashSet<>();
+        Node node = (key == null) ? root : find(key);
+        if (node != null) {
+            collectKeys(node, key, keys);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Returns names of direct children of the given key (e.g. <code>name</code> and <code>[0]</code>).
+     *
+     * @param key key in KumuluzEE format
+     * @return names of children or empty optional if the key has no children
+     */
+    public Optional<List<String>> getChildren(String key) {
+
+        Node node = find(key);
+        if (node == null || node.children.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ArrayList<>(node.children.keySet()));
+    }
+
+    /**
+     * Returns size of the list stored under the given key.
+     *
+     * @param key key in KumuluzEE format
+     * @return size of the list or empty optional if children of the key do not form a list
+     */
+    public Optional<Integer> getListSize(String key) {
+
+        Node node = find(key);
+        if (node == null) {
+            return Optional.empty();
+        }
+
+        return ListIndexes.getListSize(node.children.keySet(), 0);
+    }
+
+    /**
+     * Returns nodes on the path to the given key, starting with the root, or null if the key is not stored.
+     */
+    private List<Node> find(List<String> segments) {
+
+        List<Node> path = new ArrayList<>(segments.size() + 1);
+
+        Node node = root;
+        path.add(node);
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+            path.add(node);
+        }
+
+        return path;
+    }
+
+    /**
+     * Removes nodes on the path, which were left without values and children.
+     */
+    private static void prune(List<String> segments, List<Node> path) {
+        for (int i = segments.size(); i > 0 && !path.get(i).present && path.get(i).children.isEmpty(); i--) {
+            path.get(i - 1).children.remove(segments.get(i - 1));
+        }
+    }
+
+    private Node find(String key) {
+
+        Node node = root;
+        for (String segment : split(key)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+
+        return node;
+    }
+
+    private static void collectKeys(Node node, String key, Set<String> keys) {
+
+        if (node.present) {
+            keys.add(key);
+        }
+
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            String segment = child.getKey();
+            String childKey = (key == null) ? segment :
+                    (segment.charAt(0) == '[') ? key + segment : key + "." + segment;
+            collectKeys(child.getValue(), childKey, keys);
+        }
+    }
+
+    /**
+     * Splits the key into segments, e.g. <code>list[0].name</code> into <code>list</code>, <code>[0]</code> and
+     * <code>name</code>.
+     */
+    private static List<String> split(String key) {
+
+        List<String> segments = new ArrayList<>();
+
+        int start = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.' || (c == '[' && i > start)) {
+                if (i > start) {
+                    segments.add(key.substring(start, i));
+                }
+                start = (c == '.') ? i + 1 : i;
+            }
+        }
+
+        if (start < key.length()) {
+            segments.add(key.substring(start));
+        }
+
+        return segments;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+
+        private volatile boolean present;
+    }
+}
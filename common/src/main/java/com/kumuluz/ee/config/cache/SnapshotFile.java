@@ -0,0 +1,259 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.cache;
+
+import com.kumuluz.ee.config.utils.RetryScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local file holding the last known snapshot of a configuration source namespace.
+ *
+ * Snapshot is stored in a compact binary format: a header with the format version and the namespace, followed by
+ * length-prefixed UTF-8 encoded keys and values. Writes go to a temporary file, which then atomically replaces the
+ * snapshot, so a crash during a write never leaves a partially written snapshot behind.
+ *
+ * @since 1.4.0
+ */
+public class SnapshotFile {
+
+    private static final Logger log = Logger.getLogger(SnapshotFile.class.getName());
+
+    private static final int MAGIC = 0x4b434653;
+    private static final int VERSION = 1;
+
+    // changes are collected for this long before the snapshot is written
+    private static final long WRITE_DELAY_MS = 1000;
+
+    private final Path file;
+    private final String namespace;
+    private final ConfigurationCache cache;
+
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+
+    /**
+     * @param file      location of the snapshot file
+     * @param namespace namespace of the configuration source, snapshots of other namespaces are ignored
+     * @param cache     cache holding the namespace
+     */
+    public SnapshotFile(Path file, String namespace, ConfigurationCache cache) {
+        this.file = file;
+        this.namespace = namespace;
+        this.cache = cache;
+    }
+
+    /**
+     * Loads the snapshot into the cache.
+     *
+     * @return true if the snapshot was loaded, false if it is missing or unreadable
+     */
+    public boolean restore() {
+
+        long start = System.currentTimeMillis();
+
+        Optional<Map<String, String>> values = read();
+        if (values.isPresent()) {
+            cache.load(values.get());
+            log.log(Level.INFO, "Restored {0} configuration values from snapshot {1} in {2} ms.",
+                    new Object[]{values.get().size(), file, System.currentTimeMillis() - start});
+        }
+
+        return values.isPresent();
+    }
+
+    /**
+     * Keeps the snapshot in sync with the cache. Changes of the cache are written to the snapshot after a short
+     * delay, so a burst of changes results in a single write. Nothing is written until the whole namespace has been
+     * loaded into the cache, a restored snapshot is always complete and never holds only the individually read keys.
+     */
+    public void persist() {
+        cache.setChangeListener(() -> {
+            if (cache.isComplete() && writeScheduled.compareAndSet(false, true)) {
+                RetryScheduler.schedule(() -> {
+                    writeScheduled.set(false);
+                    write(cache.getValues());
+                }, WRITE_DELAY_MS);
+            }
+        });
+    }
+
+    /**
+     * Reconciles the restored snapshot with the configuration server on a background thread. Reading the namespace
+     * is retried with exponential backoff until it succeeds, values changed since the snapshot was written are then
+     * passed to the given consumer.
+     *
+     * @param loader          reads the namespace into the cache, returns keys which were changed or removed, or null
+     *                        if the namespace could not be read
+     * @param onChange        invoked with each changed key and its new value (null if the key was removed)
+     * @param startRetryDelay initial delay between attempts in ms
+     * @param maxRetryDelay   maximum delay between attempts in ms
+     */
+    public void reconcile(Supplier<Set<String>> loader, BiConsumer<String, String> onChange, int startRetryDelay,
+                          int maxRetryDelay) {
+
+        Thread thread = new Thread(() -> {
+            int retryDelay = startRetryDelay;
+            Set<String> changedKeys;
+
+            while ((changedKeys = loader.get()) == null) {
+                try {
+                    Thread.sleep(RetryScheduler.getJitteredDelay(retryDelay));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = RetryScheduler.getNextDelay(retryDelay, maxRetryDelay);
+            }
+
+            log.log(Level.INFO, "Snapshot {0} reconciled, {1} values changed.", new Object[]{file, changedKeys.size()});
+
+            Map<String, String> values = cache.getValues();
+            for (String key : changedKeys) {
+                onChange.accept(key, values.get(key));
+            }
+        }, "kumuluzee-config-reconcile");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @return key/value pairs, keys in KumuluzEE format, or empty optional if the snapshot is missing or unreadable
+     */
+    public Optional<Map<String, String>> read() {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.log(Level.WARNING, "Ignoring snapshot {0} with unknown format.", file);
+                return Optional.empty();
+            }
+            String snapshotNamespace = in.readUTF();
+            if (!namespace.equals(snapshotNamespace)) {
+                log.log(Level.WARNING, "Ignoring snapshot {0} of namespace {1}.",
+                        new Object[]{file, snapshotNamespace});
+                return Optional.empty();
+            }
+
+            // lengths are bounded by the file size, so a corrupted snapshot cannot cause huge allocations
+            long fileSize = Files.size(file);
+            int size = in.readInt();
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                values.put(readString(in, fileSize), readString(in, fileSize));
+            }
+
+            return Optional.of(values);
+
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot read snapshot {0}: {1}", new Object[]{file, e.toString()});
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given values.
+     *
+     * @param values key/value pairs, keys in KumuluzEE format
+     */
+    public void write(Map<String, String> values) {
+
+        Path temporaryFile = null;
+
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(namespace);
+                out.writeInt(values.size());
+                for (Map.Entry<String, String> entry : values.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            }
+
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot write snapshot {0}: {1}", new Object[]{file, e.toString()});
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Corrupted snapshot, invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
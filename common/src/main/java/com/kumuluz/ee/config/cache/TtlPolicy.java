@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.cache;
+
+import com.kumuluz.ee.config.utils.KeyUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time to live of cached values. Values of keys under a configured prefix use the TTL of the longest matching prefix,
+ * other values use the default TTL. TTL of 0 or less means the value does not expire.
+ *
+ * @since 1.4.0
+ */
+public class TtlPolicy {
+
+    private final long defaultTtlMs;
+    private final Map<String, Long> prefixTtlsMs;
+
+    /**
+     * @param defaultTtlMs TTL of values without a matching prefix in ms
+     * @param prefixTtlsMs TTL in ms for keys with the given prefix (e.g. <code>rest-config</code>), prefixes in
+     *                     KumuluzEE format
+     */
+    public TtlPolicy(long defaultTtlMs, Map<String, Long> prefixTtlsMs) {
+        this.defaultTtlMs = defaultTtlMs;
+        this.prefixTtlsMs = Collections.unmodifiableMap(new HashMap<>(prefixTtlsMs));
+    }
+
+    /**
+     * Returns TTL of the value of the given key.
+     *
+     * @param key key in KumuluzEE format
+     * @return TTL in ms, 0 or less if the value does not expire
+     */
+    public long getTtlMs(String key) {
+
+        String matchedPrefix = null;
+        long ttlMs = defaultTtlMs;
+
+        for (Map.Entry<String, Long> prefixTtl : prefixTtlsMs.entrySet()) {
+            String prefix = prefixTtl.getKey();
+            if ((matchedPrefix == null || prefix.length() > matchedPrefix.length()) &&
+                    (prefix.equals(key) || KeyUtils.isNested(prefix, key))) {
+                matchedPrefix = prefix;
+                ttlMs = prefixTtl.getValue();
+            }
+        }
+
+        return ttlMs;
+    }
+
+    /**
+     * Checks if values of any key can expire.
+     *
+     * @return true if the default TTL or any of the prefix TTLs is set
+     */
+    public boolean isEnabled() {
+        return defaultTtlMs > 0 || prefixTtlsMs.values().stream().anyMatch(ttlMs -> ttlMs > 0);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a single configuration source implementation.
+ *
+ * @since 1.4.0
+ */
+public class ConfigMetrics {
+
+    /**
+     * Latency of value reads from the configuration server (histogram).
+     */
+    public static final String READ_LATENCY = "read.latency";
+    /**
+     * Reads answered from the cache (counter).
+     */
+    public static final String CACHE_HITS = "cache.hits";
+    /**
+     * Reads, which were not answered from the cache (counter).
+     */
+    public static final String CACHE_MISSES = "cache.misses";
+    /**
+     * Watches currently open on the configuration server (gauge).
+     */
+    public static final String WATCHES_ACTIVE = "watches.active";
+    /**
+     * Watches placed again after a change was received or a blocking request timed out (counter).
+     */
+    public static final String WATCH_REARMS = "watch.rearms";
+    /**
+     * Requests retried after a failure, with a backoff delay (counter).
+     */
+    public static final String RETRIES = "retries";
+    /**
+     * Connections re-established after the connection to the configuration server was lost (counter).
+     */
+    public static final String RECONNECTS = "reconnects";
+    /**
+     * Delay between receiving a change and dispatching it to listeners (histogram).
+     */
+    public static final String DISPATCH_LAG = "dispatch.lag";
+
+    private final String source;
+
+    private final Histogram readLatency = new Histogram();
+    private final Counter cacheHits = new Counter();
+    private final Counter cacheMisses = new Counter();
+    private final Gauge activeWatches = new Gauge();
+    private final Counter watchRearms = new Counter();
+    private final Counter retries = new Counter();
+    private final Counter reconnects = new Counter();
+    private final Histogram dispatchLag = new Histogram();
+
+    private final Map<String, Metric> metrics;
+
+    /**
+     * @param source name of the configuration source implementation (e.g. <code>etcd</code>)
+     */
+    public ConfigMetrics(String source) {
+        this.source = source;
+
+        Map<String, Metric> m = new LinkedHashMap<>();
+        m.put(READ_LATENCY, readLatency);
+        m.put(CACHE_HITS, cacheHits);
+        m.put(CACHE_MISSES, cacheMisses);
+        m.put(WATCHES_ACTIVE, activeWatches);
+        m.put(WATCH_REARMS, watchRearms);
+        m.put(RETRIES, retries);
+        m.put(RECONNECTS, reconnects);
+        m.put(DISPATCH_LAG, dispatchLag);
+        this.metrics = Collections.unmodifiableMap(m);
+    }
+
+    /**
+     * Performs a read and records its latency.
+     *
+     * @param read read from the configuration server
+     * @param <T>  type of the read value
+     * @return read value
+     */
+    public <T> T timeRead(Supplier<T> read) {
+        long start = System.nanoTime();
+        try {
+            return read.get();
+        } finally {
+            readLatency.update(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts an asynchronous read and records its latency, when it completes.
+     *
+     * @param read starts the read from the configuration server
+     * @param <T>  type of the read value
+     * @return future, completed with the read value
+     */
+    public <T> CompletableFuture<T> timeReadAsync(Supplier<CompletableFuture<T>> read) {
+        long start = System.nanoTime();
+        return read.get().whenComplete((value, throwable) -> readLatency.update(System.nanoTime() - start));
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return all metrics of the source, keyed by metric name (e.g. {@link #READ_LATENCY})
+     */
+    public Map<String, Metric> getMetrics() {
+        return metrics;
+    }
+
+    public Histogram getReadLatency() {
+        return readLatency;
+    }
+
+    public Counter getCacheHits() {
+        return cacheHits;
+    }
+
+    public Counter getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public Gauge getActiveWatches() {
+        return activeWatches;
+    }
+
+    public Counter getWatchRearms() {
+        return watchRearms;
+    }
+
+    public Counter getRetries() {
+        return retries;
+    }
+
+    public Counter getReconnects() {
+        return reconnects;
+    }
+
+    public Histogram getDispatchLag() {
+        return dispatchLag;
+    }
+}
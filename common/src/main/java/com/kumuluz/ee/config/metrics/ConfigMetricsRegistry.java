@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of configuration source metrics. Metrics of each configuration source implementation are registered with
+ * all bridges, including bridges added after the source was initialized.
+ *
+ * @since 1.4.0
+ */
+public class ConfigMetricsRegistry {
+
+    private static final Logger log = Logger.getLogger(ConfigMetricsRegistry.class.getName());
+
+    private static final Map<String, ConfigMetrics> METRICS = new LinkedHashMap<>();
+    private static final List<MetricsBridge> BRIDGES = new ArrayList<>();
+
+    static {
+        for (MetricsBridge bridge : ServiceLoader.load(MetricsBridge.class)) {
+            log.log(Level.INFO, "Registering configuration metrics bridge {0}.", bridge.getClass().getName());
+            BRIDGES.add(bridge);
+        }
+    }
+
+    private ConfigMetricsRegistry() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns metrics of the given configuration source implementation, creating them on first use.
+     *
+     * @param source name of the configuration source implementation (e.g. <code>etcd</code>)
+     * @return metrics of the configuration source
+     */
+    public static synchronized ConfigMetrics getMetrics(String source) {
+
+        ConfigMetrics metrics = METRICS.get(source);
+
+        if (metrics == null) {
+            metrics = new ConfigMetrics(source);
+            METRICS.put(source, metrics);
+            for (MetricsBridge bridge : BRIDGES) {
+                bridge.register(metrics);
+            }
+        }
+
+        return metrics;
+    }
+
+    public static synchronized Collection<ConfigMetrics> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(METRICS.values()));
+    }
+
+    /**
+     * Adds a bridge and registers metrics of all configuration sources with it.
+     *
+     * @param bridge bridge to a metrics library
+     */
+    public static synchronized void addBridge(MetricsBridge bridge) {
+        BRIDGES.add(bridge);
+        for (ConfigMetrics metrics : METRICS.values()) {
+            bridge.register(metrics);
+        }
+    }
+}
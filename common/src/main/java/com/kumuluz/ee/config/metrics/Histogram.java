@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations in nanoseconds.
+ *
+ * Durations are counted in buckets with power of two bounds, so recording is lock-free and uses constant memory.
+ * Quantiles are therefore approximate: the reported value is the upper bound of the bucket holding the quantile, at
+ * most twice the exact value.
+ *
+ * @since 1.4.0
+ */
+public class Histogram implements Metric {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void update(long nanos) {
+        long value = Math.max(nanos, 0);
+
+        // bucket i holds values from 2^i to 2^(i + 1) - 1, bucket 0 also holds 0
+        buckets.incrementAndGet(Math.max(Long.SIZE - 1 - Long.numberOfLeadingZeros(value), 0));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded durations in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return longest recorded duration in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of recorded durations in nanoseconds
+     */
+    public double getMean() {
+        long n = getCount();
+        return (n > 0) ? (double) getSum() / n : 0;
+    }
+
+    /**
+     * Returns approximate value of the given quantile.
+     *
+     * @param quantile quantile between 0 and 1 (e.g. 0.99)
+     * @return duration in nanoseconds
+     */
+    public long getQuantile(double quantile) {
+
+        long total = 0;
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                long upperBound = (i >= Long.SIZE - 2) ? Long.MAX_VALUE : (2L << i) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+
+        return getMax();
+    }
+}
@@ -22,8 +22,13 @@
 package com.kumuluz.ee.config.utils;
 
 import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.cache.TtlPolicy;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -91,4 +96,101 @@ public class InitializationUtils {
                     .orElse(900000);
         }
     }
+
+    /**
+     * Returns the window, over which configuration changes are gathered before they are dispatched to listeners.
+     *
+     * @param configurationUtil configuration
+     * @param implementation    name of the configuration source implementation
+     * @return window in ms, 0 if changes are dispatched immediately
+     */
+    public static int getDispatchWindowMs(ConfigurationUtil configurationUtil, String implementation) {
+        Optional<Integer> universalConfig = configurationUtil.getInteger("kumuluzee.config.dispatch-window-ms");
+        if (universalConfig.isPresent()) {
+            return universalConfig.get();
+        } else {
+            return configurationUtil.getInteger("kumuluzee.config." + implementation + ".dispatch-window-ms")
+                    .orElse(0);
+        }
+    }
+
+    public static boolean isCacheEnabled(ConfigurationUtil configurationUtil, String implementation) {
+        return getBoolean(configurationUtil, implementation, "cache.enabled", false) ||
+                getCacheTtlPolicy(configurationUtil, implementation).isEnabled();
+    }
+
+    /**
+     * Returns TTL of cached values. Default TTL is set with <code>cache.ttl-ms</code> and TTLs of key prefixes with
+     * the <code>cache.ttls</code> list of <code>prefix</code> and <code>ttl-ms</code> pairs.
+     *
+     * @param configurationUtil configuration
+     * @param implementation    name of the configuration source implementation
+     * @return TTL policy, which never expires values if no TTL is configured
+     */
+    public static TtlPolicy getCacheTtlPolicy(ConfigurationUtil configurationUtil, String implementation) {
+        String prefix = "kumuluzee.config.cache.";
+        if (!configurationUtil.get(prefix + "ttl-ms").isPresent() &&
+                !configurationUtil.getListSize(prefix + "ttls").isPresent()) {
+            prefix = "kumuluzee.config." + implementation + ".cache.";
+        }
+
+        Map<String, Long> prefixTtlsMs = new HashMap<>();
+        int ttlCount = configurationUtil.getListSize(prefix + "ttls").orElse(0);
+        for (int i = 0; i < ttlCount; i++) {
+            Optional<String> keyPrefix = configurationUtil.get(prefix + "ttls[" + i + "].prefix");
+            Optional<Long> ttlMs = configurationUtil.getLong(prefix + "ttls[" + i + "].ttl-ms");
+            if (keyPrefix.isPresent() && ttlMs.isPresent()) {
+                prefixTtlsMs.put(keyPrefix.get(), ttlMs.get());
+            }
+        }
+
+        return new TtlPolicy(configurationUtil.getLong(prefix + "ttl-ms").orElse(0L), prefixTtlsMs);
+    }
+
+    public static boolean isPreloadEnabled(ConfigurationUtil configurationUtil, String implementation) {
+        return getBoolean(configurationUtil, implementation, "preload", false);
+    }
+
+    /**
+     * Returns whether the cache is filled on first read of each key, instead of loading the whole namespace when the
+     * source is initialized. Ignored with preload or snapshots, which always load the whole namespace.
+     */
+    public static boolean isCacheLazy(ConfigurationUtil configurationUtil, String implementation) {
+        return getBoolean(configurationUtil, implementation, "cache.lazy", false);
+    }
+
+    public static boolean isNamespaceWatchEnabled(ConfigurationUtil configurationUtil, String implementation) {
+        return getBoolean(configurationUtil, implementation, "namespace-watch", false);
+    }
+
+    /**
+     * Returns location of the namespace snapshot file, if snapshots are enabled by setting the snapshot directory.
+     *
+     * @param configurationUtil configuration
+     * @param implementation    name of the configuration source implementation
+     * @param namespace         namespace of the configuration source
+     * @return path of the snapshot file or empty optional if snapshots are disabled
+     */
+    public static Optional<Path> getSnapshotFile(ConfigurationUtil configurationUtil, String implementation,
+                                                 String namespace) {
+        Optional<String> directory = configurationUtil.get("kumuluzee.config.snapshot.directory");
+        if (!directory.isPresent()) {
+            directory = configurationUtil.get("kumuluzee.config." + implementation + ".snapshot.directory");
+        }
+
+        return directory.filter(d -> !d.isEmpty())
+                .map(d -> Paths.get(d, implementation + "-" + namespace.replaceAll("[^A-Za-z0-9._-]", "_") +
+                        ".snapshot"));
+    }
+
+    private static boolean getBoolean(ConfigurationUtil configurationUtil, String implementation, String key,
+                                      boolean defaultValue) {
+        Optional<Boolean> universalConfig = configurationUtil.getBoolean("kumuluzee.config." + key);
+        if (universalConfig.isPresent()) {
+            return universalConfig.get();
+        } else {
+            return configurationUtil.getBoolean("kumuluzee.config." + implementation + "." + key)
+                    .orElse(defaultValue);
+        }
+    }
 }
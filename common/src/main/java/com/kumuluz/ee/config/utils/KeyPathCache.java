@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Memoised translation between KumuluzEE keys and full paths of a configuration server, including the namespace.
+ *
+ * Keys used by a service form a small and fixed set, so translations are computed once and then returned from the
+ * cache without allocation. The number of cached translations in each direction is bounded; when the bound is
+ * reached, cached translations are discarded and the cache is filled again.
+ *
+ * @since 1.4.0
+ */
+public class KeyPathCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Function<String, String> pathTranslator;
+    private final Function<String, String> keyTranslator;
+    private final int maxSize;
+
+    private final Map<String, String> paths = new ConcurrentHashMap<>();
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * @param pathTranslator translates KumuluzEE key to full path
+     * @param keyTranslator  translates full path to KumuluzEE key
+     */
+    public KeyPathCache(Function<String, String> pathTranslator, Function<String, String> keyTranslator) {
+        this(pathTranslator, keyTranslator, DEFAULT_MAX_SIZE);
+    }
+
+    public KeyPathCache(Function<String, String> pathTranslator, Function<String, String> keyTranslator,
+                        int maxSize) {
+        this.pathTranslator = pathTranslator;
+        this.keyTranslator = keyTranslator;
+        this.maxSize = maxSize;
+    }
+
+    public static KeyPathCache forEtcd(String namespace) {
+        return new KeyPathCache(key -> namespace + "/" + KeyUtils.parseKeyNameForEtcd(key),
+                path -> KeyUtils.parseKeyNameFromEtcd(namespace, path));
+    }
+
+    public static KeyPathCache forConsul(String namespace) {
+        return new KeyPathCache(key -> namespace + "/" + KeyUtils.parseKeyNameForConsul(key),
+                path -> KeyUtils.parseKeyNameFromConsul(namespace, path));
+    }
+
+    /**
+     * etcd API v3 keys are plain byte strings without a leading slash, so they are in the same format as Consul keys.
+     */
+    public static KeyPathCache forEtcd3(String namespace) {
+        return new KeyPathCache(key -> namespace + "/" + KeyUtils.parseKeyNameForConsul(key),
+                path -> KeyUtils.parseKeyNameFromConsul(namespace, path));
+    }
+
+    public static KeyPathCache forZookeeper(String namespace) {
+        return new KeyPathCache(key -> "/" + namespace + KeyUtils.parseKeyNameForZookeeper(key),
+                path -> KeyUtils.parseKeyNameFromZookeeper(namespace, path));
+    }
+
+    /**
+     * Returns full path of the given key.
+     *
+     * @param key key in KumuluzEE format
+     * @return full path, including the namespace
+     */
+    public String getPath(String key) {
+        return translate(paths, pathTranslator, key);
+    }
+
+    /**
+     * Returns KumuluzEE key of the given full path.
+     *
+     * @param path full path, including the namespace
+     * @return key in KumuluzEE format
+     */
+    public String getKey(String path) {
+        return translate(keys, keyTranslator, path);
+    }
+
+    private String translate(Map<String, String> translations, Function<String, String> translator, String value) {
+
+        String translated = translations.get(value);
+
+        if (translated == null) {
+            translated = translator.apply(value);
+
+            if (translations.size() >= maxSize) {
+                translations.clear();
+            }
+            // concurrent translations of the same value are equal, no need to compute atomically
+            translations.put(value, translated);
+        }
+
+        return translated;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Util class for working with configuration keys in KumuluzEE format (e.g. <code>rest-config.list[0].name</code>).
+ *
+ * @since 1.4.0
+ */
+public class KeyUtils {
+
+    private KeyUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Checks if key is nested under parent key.
+     *
+     * @param parent parent key, e.g. <code>rest-config</code>
+     * @param key    key to check, e.g. <code>rest-config.list[0]</code>
+     * @return true if key is a descendant of parent
+     */
+    public static boolean isNested(String parent, String key) {
+        if (key.length() <= parent.length() || !key.startsWith(parent)) {
+            return false;
+        }
+
+        char separator = key.charAt(parent.length());
+        return separator == '.' || separator == '[';
+    }
+
+    /**
+     * Returns the parent of the given key.
+     *
+     * @param key key, e.g. <code>rest-config.list[0]</code>
+     * @return parent key, e.g. <code>rest-config.list</code> or null if key has no parent
+     */
+    public static String getParentKey(String key) {
+        for (int i = key.length() - 1; i > 0; i--) {
+            char c = key.charAt(i);
+            if (c == '.' || c == '[') {
+                return key.substring(0, i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses KumuluzEE key to etcd key.
+     *
+     * @param key dot-separated string: <code>val1.val2[0]</code>
+     * @return slash-separated string with URL-encoded parts: <code>val1/val2/%5B0%5D</code>
+     */
+    public static String parseKeyNameForEtcd(String key) {
+
+        key = key.replace("[", ".[");
+        String[] splittedKey = key.split("\\.");
+
+        StringBuilder parsedKey = new StringBuilder();
+        for (String s : splittedKey) {
+            try {
+                parsedKey.append(URLEncoder.encode(s, "UTF-8")).append("/");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("UTF-8 encoding not supported.", e);
+            }
+        }
+
+        return parsedKey.deleteCharAt(parsedKey.length() - 1).toString();
+    }
+
+    /**
+     * Parses etcd key to KumuluzEE key.
+     *
+     * @param namespace namespace of the configuration source
+     * @param key       etcd key: <code>/namespace/val1/val2/[0]</code>
+     * @return dot-separated string: <code>val1.val2[0]</code>
+     */
+    public static String parseKeyNameFromEtcd(String namespace, String key) {
+        return key.substring(namespace.length() + 2).replace("/", ".").replace(".[", "[");
+    }
+
+    /**
+     * Parses KumuluzEE key to Consul key.
+     *
+     * @param key dot-separated string: <code>val1.val2[0]</code>
+     * @return slash-separated string: <code>val1/val2/[0]</code>
+     */
+    public static String parseKeyNameForConsul(String key) {
+        return key.replace("[", ".[").replace(".", "/");
+    }
+
+    /**
+     * Parses Consul key to KumuluzEE key.
+     *
+     * @param namespace namespace of the configuration source
+     * @param key       Consul key: <code>namespace/val1/val2/[0]</code>
+     * @return dot-separated string: <code>val1.val2[0]</code>
+     */
+    public static String parseKeyNameFromConsul(String namespace, String key) {
+        return key.substring(namespace.length() + 1).replace("/", ".").replace(".[", "[");
+    }
+
+    /**
+     * Parses KumuluzEE key to Zookeeper key.
+     *
+     * @param key dot-separated string: <code>val1.val2.val3</code>
+     * @return slash-separated string: <code>/val1/val2/val3</code>
+     */
+    public static String parseKeyNameForZookeeper(String key) {
+        key = key.replace("[", ".[");
+        String[] splittedKey = key.split("\\.");
+
+        StringBuilder parsedKey = new StringBuilder();
+        for (String s : splittedKey) {
+            parsedKey.append("/").append(s);
+        }
+
+        return parsedKey.toString();
+    }
+
+    /**
+     * Parses Zookeeper key to KumuluzEE key.
+     *
+     * @param namespace namespace of the configuration source
+     * @param key       Zookeeper key: <code>/namespace/val1/val2/val3</code>
+     * @return dot-separated string: <code>val1.val2.val3</code>
+     */
+    public static String parseKeyNameFromZookeeper(String namespace, String key) {
+        return key.substring(namespace.length() + 2).replace("/", ".").replace(".[", "[");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.utils;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Detects lists among child keys of a key. Child keys representing list items are named by their index in square
+ * brackets (e.g. <code>[0]</code>) and the list consists of the continuous indexes starting with 0.
+ *
+ * Indexes are parsed in place and marked in a bit set, so child keys are analysed in linear time without sorting.
+ * Indexes which cannot be part of the list (not lower than the number of child keys) are ignored, which also bounds
+ * the size of the bit set.
+ *
+ * @since 1.4.0
+ */
+public class ListIndexes {
+
+    private final int maxIndexes;
+    private final BitSet indexes;
+
+    /**
+     * @param keyCount number of child keys, which will be added
+     */
+    public ListIndexes(int keyCount) {
+        this.maxIndexes = keyCount;
+        this.indexes = new BitSet(keyCount);
+    }
+
+    /**
+     * Returns size of the list formed by the given child keys.
+     *
+     * @param keys  child keys
+     * @param start position of the child key name in each key (e.g. length of the parent path)
+     * @return size of the list or empty optional if the keys do not form a list
+     */
+    public static Optional<Integer> getListSize(Collection<String> keys, int start) {
+
+        if (keys == null) {
+            return Optional.empty();
+        }
+
+        ListIndexes listIndexes = new ListIndexes(keys.size());
+        for (String key : keys) {
+            listIndexes.add(key, start);
+        }
+
+        return listIndexes.getListSize();
+    }
+
+    /**
+     * Adds a child key. Keys, which are not list items, are ignored.
+     *
+     * @param key   child key, name of the key may be followed by a single slash (e.g. <code>[0]/</code>)
+     * @param start position of the child key name in the key
+     */
+    public void add(String key, int start) {
+
+        int end = key.length();
+        if (end > start && key.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        if (end - start < 3 || key.charAt(start) != '[' || key.charAt(end - 1) != ']') {
+            return;
+        }
+
+        int index = 0;
+        for (int i = start + 1; i < end - 1; i++) {
+            int digit = key.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return;
+            }
+
+            index = index * 10 + digit;
+            if (index >= maxIndexes) {
+                return;
+            }
+        }
+
+        indexes.set(index);
+    }
+
+    /**
+     * Returns size of the list formed by the added keys.
+     *
+     * @return number of continuous indexes starting with 0 or empty optional if index 0 is missing
+     */
+    public Optional<Integer> getListSize() {
+
+        int listSize = indexes.nextClearBit(0);
+
+        return (listSize > 0) ? Optional.of(listSize) : Optional.empty();
+    }
+}
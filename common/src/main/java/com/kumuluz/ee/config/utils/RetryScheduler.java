@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Util class for scheduling delayed retries with jittered exponential backoff.
+ *
+ * Retries are run on a small scheduler shared by all configuration sources, so waiting for a retry does not occupy
+ * client threads.
+ *
+ * @since 1.4.0
+ */
+public class RetryScheduler {
+
+    private RetryScheduler() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static class SchedulerHolder {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(1, runnable -> {
+            Thread thread = new Thread(runnable, "kumuluzee-config-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ScheduledExecutorService getScheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    /**
+     * Schedules retry after the given delay.
+     *
+     * @param task    task to run
+     * @param delayMs delay in ms
+     */
+    public static void schedule(Runnable task, long delayMs) {
+        getScheduler().schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a random delay between one half and the whole of the given delay, so retries of many clients do not
+     * reach the server at the same time.
+     *
+     * @param delayMs delay in ms
+     * @return jittered delay in ms
+     */
+    public static long getJitteredDelay(long delayMs) {
+        long half = delayMs / 2;
+        return half + ThreadLocalRandom.current().nextLong(delayMs - half + 1);
+    }
+
+    /**
+     * Returns the next delay of the exponential backoff.
+     *
+     * @param delayMs    current delay in ms
+     * @param maxDelayMs maximum delay in ms
+     * @return doubled delay, limited by maximum delay
+     */
+    public static int getNextDelay(int delayMs, int maxDelayMs) {
+        return (int) Math.min((long) delayMs * 2, maxDelayMs);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key. While a load of a key is in flight, other callers requesting the same key
+ * wait for it and receive its result instead of sending their own request to the configuration server. Results are not
+ * remembered once the load completes.
+ *
+ * Synchronous and asynchronous loads of a key share the same in-flight load.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the loaded value
+ * @since 1.4.0
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the value of the given key or waits for the load already in flight.
+     *
+     * @param key    key to load
+     * @param loader loads the value, invoked on the calling thread
+     * @return loaded value
+     */
+    public V execute(K key, Function<K, V> loader) {
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            V value = loader.apply(key);
+            inFlight.remove(key, call);
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts an asynchronous load of the given key or returns the load already in flight.
+     *
+     * @param key    key to load
+     * @param loader starts the asynchronous load of the value
+     * @return future, completed with the loaded value
+     */
+    public CompletableFuture<V> executeAsync(K key, Function<K, CompletableFuture<V>> loader) {
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            loader.apply(key).whenComplete((value, throwable) -> {
+                inFlight.remove(key, call);
+                if (throwable != null) {
+                    call.completeExceptionally(throwable);
+                } else {
+                    call.complete(value);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+        }
+
+        return call;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
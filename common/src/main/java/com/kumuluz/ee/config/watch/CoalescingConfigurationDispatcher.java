@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.watch;
+
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.configuration.ConfigurationListener;
+import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Configuration dispatcher, which gathers changes over a time window before passing them to the wrapped dispatcher.
+ *
+ * The window starts with the first change after the previous delivery. Within the window, only the latest value of
+ * each key is kept. When the window closes, gathered changes are delivered together, in the order of their latest
+ * change, on a dedicated thread shared by all coalescing dispatchers, so listeners are not invoked on the I/O threads
+ * of configuration server clients.
+ *
+ * @since 1.4.0
+ */
+public class CoalescingConfigurationDispatcher extends ConfigurationDispatcher {
+
+    private static final Logger log = Logger.getLogger(CoalescingConfigurationDispatcher.class.getName());
+
+    private final ConfigurationDispatcher delegate;
+    private final long windowMs;
+    private final ConfigMetrics metrics;
+
+    private Map<String, PendingChange> pendingChanges = new LinkedHashMap<>();
+    private boolean deliveryScheduled = false;
+
+    private CoalescingConfigurationDispatcher(ConfigurationDispatcher delegate, long windowMs, ConfigMetrics metrics) {
+        this.delegate = delegate;
+        this.windowMs = windowMs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps the given dispatcher, if coalescing is enabled.
+     *
+     * @param dispatcher dispatcher to wrap, may be null
+     * @param windowMs   duration of the window in ms, 0 or less disables coalescing
+     * @param metrics    metrics of the configuration source, delay of delivered changes is recorded there
+     * @return coalescing dispatcher or the given dispatcher, if coalescing is disabled
+     */
+    public static ConfigurationDispatcher wrap(ConfigurationDispatcher dispatcher, long windowMs,
+                                               ConfigMetrics metrics) {
+        if (dispatcher == null || windowMs <= 0) {
+            return dispatcher;
+        }
+
+        return new CoalescingConfigurationDispatcher(dispatcher, windowMs, metrics);
+    }
+
+    private static class ExecutorHolder {
+
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "kumuluzee-config-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void notifyChange(String key, String value) {
+        synchronized (this) {
+            // re-inserting moves the key to the end, so changes are delivered in the order of their latest change
+            pendingChanges.remove(key);
+            pendingChanges.put(key, new PendingChange(value, System.nanoTime()));
+
+            if (deliveryScheduled) {
+                return;
+            }
+            deliveryScheduled = true;
+        }
+
+        ExecutorHolder.EXECUTOR.schedule(this::deliver, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver() {
+
+        Map<String, PendingChange> changes;
+        synchronized (this) {
+            changes = pendingChanges;
+            pendingChanges = new LinkedHashMap<>();
+            deliveryScheduled = false;
+        }
+
+        log.log(Level.FINE, "Delivering {0} coalesced configuration changes.", changes.size());
+
+        for (Map.Entry<String, PendingChange> change : changes.entrySet()) {
+            if (metrics != null) {
+                metrics.getDispatchLag().update(System.nanoTime() - change.getValue().receivedNanos);
+            }
+            try {
+                delegate.notifyChange(change.getKey(), change.getValue().value);
+            } catch (RuntimeException e) {
+                // a failing listener must not prevent delivery of the remaining changes
+                log.log(Level.SEVERE, "Error notifying change of key " + change.getKey(), e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(ConfigurationListener listener) {
+        delegate.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribe(ConfigurationListener listener) {
+        delegate.unsubscribe(listener);
+    }
+
+    private static class PendingChange {
+
+        private final String value;
+        private final long receivedNanos;
+
+        private PendingChange(String value, long receivedNanos) {
+            this.value = value;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.watch;
+
+import com.kumuluz.ee.config.utils.KeyUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of watched keys, used when a single watch is placed on the whole namespace.
+ *
+ * Changes received from the namespace watch are routed to the registered keys. A watch on a key also covers all of its
+ * nested keys, same as a watch placed directly on the key.
+ *
+ * @since 1.4.0
+ */
+public class WatchRegistry {
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Registers a watched key.
+     *
+     * @param key key in KumuluzEE format
+     * @return true if key was not registered before
+     */
+    public boolean register(String key) {
+        return keys.add(key);
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Returns keys, which should be notified about the change of the given key. These are the changed key itself, if
+     * it or any of its parents is watched, and all watched keys nested under the changed key (e.g. when a directory
+     * is deleted).
+     *
+     * @param changedKey changed key in KumuluzEE format
+     * @return list of keys to notify
+     */
+    public List<String> getAffectedKeys(String changedKey) {
+
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> affectedKeys = new ArrayList<>();
+
+        for (String key = changedKey; key != null; key = KeyUtils.getParentKey(key)) {
+            if (keys.contains(key)) {
+                affectedKeys.add(changedKey);
+                break;
+            }
+        }
+
+        for (String key : keys) {
+            if (KeyUtils.isNested(changedKey, key)) {
+                affectedKeys.add(key);
+            }
+        }
+
+        return affectedKeys;
+    }
+}
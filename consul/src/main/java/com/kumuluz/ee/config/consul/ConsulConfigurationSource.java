@@ -21,9 +21,21 @@
 package com.kumuluz.ee.config.consul;
 
 import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.AsyncConfigurationSource;
+import com.kumuluz.ee.config.BatchConfigurationSource;
+import com.kumuluz.ee.config.BatchWriteResult;
+import com.kumuluz.ee.config.cache.ConfigurationCache;
+import com.kumuluz.ee.config.cache.SnapshotFile;
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.metrics.ConfigMetricsRegistry;
 import com.kumuluz.ee.config.utils.InitializationUtils;
+import com.kumuluz.ee.config.utils.KeyPathCache;
+import com.kumuluz.ee.config.utils.ListIndexes;
 import com.kumuluz.ee.config.utils.ParseUtils;
-import com.kumuluz.ee.configuration.ConfigurationSource;
+import com.kumuluz.ee.config.utils.RetryScheduler;
+import com.kumuluz.ee.config.utils.SingleFlight;
+import com.kumuluz.ee.config.watch.CoalescingConfigurationDispatcher;
+import com.kumuluz.ee.config.watch.WatchRegistry;
 import com.kumuluz.ee.configuration.utils.ConfigurationDecoderUtils;
 import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
@@ -32,7 +44,13 @@ import com.orbitz.consul.ConsulException;
 import com.orbitz.consul.KeyValueClient;
 import com.orbitz.consul.async.ConsulResponseCallback;
 import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.Operation;
+import com.orbitz.consul.model.kv.TxError;
+import com.orbitz.consul.model.kv.TxResponse;
 import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.model.kv.Verb;
+import com.orbitz.consul.option.ConsistencyMode;
+import com.orbitz.consul.option.ImmutableQueryOptions;
 import com.orbitz.consul.option.QueryOptions;
 
 import javax.annotation.Nonnull;
@@ -40,8 +58,15 @@ import java.math.BigInteger;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 /**
@@ -51,25 +76,49 @@ import java.util.logging.Logger;
  * @author Jan Meznarič
  * @since 1.0.0
  */
-public class ConsulConfigurationSource implements ConfigurationSource {
+public class ConsulConfigurationSource implements BatchConfigurationSource, AsyncConfigurationSource {
 
     private static final Logger log = Logger.getLogger(ConsulConfigurationSource.class.getName());
 
+    private static final int DEFAULT_ORDINAL = 110;
+
     // Specifies wait parameter, passed to Consul when initializing watches.
     // Consul ends connection (sends current state), when wait time is reached.
     // After that, the watch is reestablished.
     private static final int CONSUL_WATCH_WAIT_SECONDS = 120;
 
+    // Maximum number of operations in a single Consul transaction.
+    private static final int CONSUL_TXN_MAX_OPERATIONS = 64;
+
+    // Number of threads making asynchronous keys-only requests, shared by all Consul sources.
+    private static final int LISTING_THREADS = 4;
+
     private ConfigurationDispatcher configurationDispatcher;
 
     private Consul consul;
     private KeyValueClient kvClient;
 
     private String namespace;
+    private KeyPathCache keyPaths;
+    private volatile int ordinal = DEFAULT_ORDINAL;
 
     private int startRetryDelay;
     private int maxRetryDelay;
 
+    // consistency mode of reads, watches always use the default mode
+    private QueryOptions readOptions = QueryOptions.BLANK;
+    private long maxStaleMs;
+
+    private ConfigurationCache cache;
+    private boolean preload;
+    private final SingleFlight<String, Optional<String>> reads = new SingleFlight<>();
+    private final ConfigMetrics metrics = ConfigMetricsRegistry.getMetrics("consul");
+
+    private WatchRegistry watchRegistry;
+    private final AtomicBoolean namespaceWatchStarted = new AtomicBoolean(false);
+    // keys watched individually, when the namespace watch is disabled
+    private final Set<String> watchedKeys = ConcurrentHashMap.newKeySet();
+
     private EeConfig eeConfig;
 
     public ConsulConfigurationSource(EeConfig eeConfig) {
@@ -83,13 +132,15 @@ public class ConsulConfigurationSource implements ConfigurationSource {
         ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
 
         this.namespace = InitializationUtils.getNamespace(this.eeConfig, configurationUtil, "consul");
+        this.keyPaths = KeyPathCache.forConsul(this.namespace);
         log.info("Using namespace: " + this.namespace);
 
         // get retry delays
         startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "consul");
         maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "consul");
 
-        this.configurationDispatcher = configurationDispatcher;
+        this.configurationDispatcher = CoalescingConfigurationDispatcher.wrap(configurationDispatcher,
+                InitializationUtils.getDispatchWindowMs(configurationUtil, "consul"), metrics);
 
         URL consulAgentUrl = null;
         try {
@@ -105,6 +156,10 @@ public class ConsulConfigurationSource implements ConfigurationSource {
         }
         log.info("Connecting to Consul Agent at: " + consulAgentUrl.toString());
 
+        readOptions = getReadOptions(configurationUtil.get("kumuluzee.config.consul.consistency-mode")
+                .orElse("default"));
+        maxStaleMs = configurationUtil.getLong("kumuluzee.config.consul.max-stale-ms").orElse(0L);
+
         // withReadTimeoutMillis: Sets read timeout on underlying library (okhttp).
         // timeout is calculated by using Consul formula for maximum waiting time with added time (1s) for connection
         // delays. For formula and more details, see: https://www.consul.io/api/index.html#blocking-queries
@@ -114,17 +169,48 @@ public class ConsulConfigurationSource implements ConfigurationSource {
                         1000)
                 .build();
 
-        boolean pingSuccessful = false;
-        try {
-            consul.agentClient().ping();
-            pingSuccessful = true;
-        } catch (ConsulException e) {
-            log.severe("Cannot ping Consul agent: " + e.getLocalizedMessage());
+        kvClient = consul.keyValueClient();
+
+        preload = InitializationUtils.isPreloadEnabled(configurationUtil, "consul");
+        boolean cacheLazy = InitializationUtils.isCacheLazy(configurationUtil, "consul");
+        Optional<Path> snapshotPath = InitializationUtils.getSnapshotFile(configurationUtil, "consul", namespace);
+        SnapshotFile snapshot = null;
+        boolean restored = false;
+        if (preload || snapshotPath.isPresent() || InitializationUtils.isCacheEnabled(configurationUtil, "consul")) {
+            cache = new ConfigurationCache(metrics);
+            cache.setExpiration(InitializationUtils.getCacheTtlPolicy(configurationUtil, "consul"), this::readAsync);
+            if (snapshotPath.isPresent()) {
+                snapshot = new SnapshotFile(snapshotPath.get(), namespace, cache);
+                restored = snapshot.restore();
+                snapshot.persist();
+            }
+            if (!restored && (preload || snapshot != null || !cacheLazy)) {
+                preload();
+            }
         }
 
-        kvClient = consul.keyValueClient();
+        // with a restored snapshot, the agent is contacted only by the background reconciliation
+        boolean pingSuccessful = restored || ping();
+
+        if (InitializationUtils.isNamespaceWatchEnabled(configurationUtil, "consul")) {
+            watchRegistry = new WatchRegistry();
+        }
+
+        // resolve ordinal once, the watch keeps it up to date
+        ordinal = getInteger(CONFIG_ORDINAL).orElse(DEFAULT_ORDINAL);
+        watch(CONFIG_ORDINAL);
+
+        if (snapshot != null && !cache.isComplete()) {
+            // snapshot is written only after the whole namespace was read, keep reading it in background
+            snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+        }
 
-        if (pingSuccessful) {
+        if (restored) {
+            // serve values from the snapshot, reconcile with Consul in background
+            snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+            log.info("Consul configuration source initialized from snapshot, reconciling with Consul agent in " +
+                    "background.");
+        } else if (pingSuccessful) {
             log.info("Consul configuration source successfully initialized.");
         } else {
             log.warning("Consul configuration source initialized, but Consul agent inaccessible. " +
@@ -132,15 +218,57 @@ public class ConsulConfigurationSource implements ConfigurationSource {
         }
     }
 
+    private boolean ping() {
+        try {
+            consul.agentClient().ping();
+            return true;
+        } catch (ConsulException e) {
+            log.severe("Cannot ping Consul agent: " + e.getLocalizedMessage());
+            return false;
+        }
+    }
+
     @Override
     public Optional<String> get(@Nonnull String key) {
 
-        key = this.namespace + "/" + parseKeyNameForConsul(key);
+        if (cache != null) {
+            return cache.get(key, this::load);
+        }
+
+        return load(key);
+    }
+
+    /**
+     * Returns parsed value of the given key. With caching enabled, the parsed value is cached alongside the raw value.
+     */
+    private <T> Optional<T> getParsed(String key, Class<T> type, Function<Optional<String>, Optional<T>> parser) {
+
+        if (cache != null) {
+            return cache.get(key, this::load, type, parser);
+        }
+
+        return parser.apply(get(key));
+    }
+
+    /**
+     * Reads the value from Consul. Concurrent reads of the same key share a single request.
+     */
+    private Optional<String> load(String key) {
+        return reads.execute(key, k -> metrics.timeRead(() -> getFromConsul(k)));
+    }
+
+    private Optional<String> getFromConsul(String key) {
+
+        key = keyPaths.getPath(key);
 
         Optional<String> value = Optional.empty();
 
         try {
-            value = kvClient.getValueAsString(key);
+            Optional<ConsulResponse<Value>> response = kvClient.getConsulResponseWithValue(key, readOptions);
+            if (response.isPresent() && isTooStale(response.get())) {
+                response = kvClient.getConsulResponseWithValue(key, QueryOptions.BLANK);
+            }
+            value = response.flatMap(r -> r.getResponse().getValueAsString());
         } catch (ConsulException e) {
             log.severe("Consul exception: " + e.getLocalizedMessage());
         }
@@ -149,94 +277,255 @@ public class ConsulConfigurationSource implements ConfigurationSource {
 
     }
 
+    /**
+     * Checks if a stale read was served by a server, which had no contact with the leader for longer than allowed.
+     */
+    private boolean isTooStale(ConsulResponse<?> response) {
+        return maxStaleMs > 0 && response.getLastContact() > maxStaleMs;
+    }
+
+    /**
+     * Returns query options of reads for the given consistency mode. Agent caching is not supported by the Consul KV
+     * endpoint, so the cached mode falls back to stale reads.
+     */
+    private static QueryOptions getReadOptions(String consistencyMode) {
+        switch (consistencyMode.toLowerCase(Locale.ROOT)) {
+            case "default":
+                return QueryOptions.BLANK;
+            case "stale":
+                return ImmutableQueryOptions.builder().consistencyMode(ConsistencyMode.STALE).build();
+            case "consistent":
+                return ImmutableQueryOptions.builder().consistencyMode(ConsistencyMode.CONSISTENT).build();
+            case "cached":
+                log.warning("Consul KV endpoint does not support agent caching, using stale reads. Use " +
+                        "kumuluzee.config.consul.cache.ttl-ms to cache values locally.");
+                return ImmutableQueryOptions.builder().consistencyMode(ConsistencyMode.STALE).build();
+            default:
+                log.warning("Unknown Consul consistency mode " + consistencyMode + ", using default mode.");
+                return QueryOptions.BLANK;
+        }
+    }
+
     @Override
     public Optional<Boolean> getBoolean(@Nonnull String key) {
-        return ParseUtils.parseOptionalStringToOptionalBoolean(get(key));
+        return getParsed(key, Boolean.class, ParseUtils::parseOptionalStringToOptionalBoolean);
     }
 
     @Override
     public Optional<Integer> getInteger(@Nonnull String key) {
-        return ParseUtils.parseOptionalStringToOptionalInteger(get(key));
+        return getParsed(key, Integer.class, ParseUtils::parseOptionalStringToOptionalInteger);
     }
 
     @Override
     public Optional<Long> getLong(@Nonnull String key) {
-        return ParseUtils.parseOptionalStringToOptionalLong(get(key));
+        return getParsed(key, Long.class, ParseUtils::parseOptionalStringToOptionalLong);
     }
 
     @Override
     public Optional<Double> getDouble(@Nonnull String key) {
-        return ParseUtils.parseOptionalStringToOptionalDouble(get(key));
+        return getParsed(key, Double.class, ParseUtils::parseOptionalStringToOptionalDouble);
     }
 
     @Override
     public Optional<Float> getFloat(@Nonnull String key) {
-        return ParseUtils.parseOptionalStringToOptionalFloat(get(key));
+        return getParsed(key, Float.class, ParseUtils::parseOptionalStringToOptionalFloat);
+    }
+
+    /**
+     * Map keys and list sizes are answered from the index of cached keys only while the namespace watch keeps the
+     * whole cached namespace up to date, otherwise keys added on the server would be missing from the index.
+     */
+    private boolean isKeyIndexCurrent() {
+        return cache != null && cache.isComplete() && namespaceWatchStarted.get();
     }
 
     @Override
     public Optional<Integer> getListSize(String key) {
 
-        // get directory
-        key = namespace + "/" + parseKeyNameForConsul(key);
-        List<Value> values = null;
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return listSize;
+            }
+        }
+
+        String prefix = keyPaths.getPath(key) + "/";
+
+        return toListSize(prefix, getChildKeys(prefix));
+    }
+
+    @Override
+    public Optional<List<String>> getMapKeys(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return mapKeys;
+            }
+        }
+
+        return toMapKeys(getChildKeys(keyPaths.getPath(key) + "/"));
+    }
+
+    /**
+     * Lists keys directly under the given prefix with a keys-only request, so no values are transferred. Nested keys
+     * are grouped by the separator and returned as a single key ending with a slash (e.g. <code>map/nested/</code>).
+     *
+     * @param prefix full key ending with a slash
+     * @return child keys or null, if the request failed
+     */
+    private List<String> getChildKeys(String prefix) {
 
         try {
-            values = kvClient.getValues(key);
+            List<String> keys = new ArrayList<>(kvClient.getKeys(prefix, "/", readOptions));
+            // folder created with the UI is stored as a key equal to the prefix
+            keys.remove(prefix);
+            return keys;
         } catch (ConsulException e) {
             log.severe("Consul exception: " + e.getLocalizedMessage());
         }
 
-        if (values != null && !values.isEmpty()) {
-            // get array indexes
-            List<Integer> arrayIndexes = new ArrayList<>();
-            for (Value v : values) {
-                String nodeKey = v.getKey();
-                try {
-                    arrayIndexes.add(Integer.parseInt(nodeKey.substring(key.length() + 2, nodeKey.length() - 1)));
-                } catch (NumberFormatException e) {
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAsync(String key) {
+
+        if (cache != null) {
+            return cache.getAsync(key, this::loadAsync);
+        }
+
+        return loadAsync(key);
+    }
+
+    private CompletableFuture<Optional<String>> loadAsync(String key) {
+        // errors are logged and reported as absent values
+        return readAsync(key).exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Reads the value from Consul. Concurrent reads of the same key share a single request. Unlike
+     * {@link #loadAsync(String)}, the returned future is completed exceptionally if the value could not be read, so
+     * a failed refresh of an expired value keeps the cached value.
+     */
+    private CompletableFuture<Optional<String>> readAsync(String key) {
+        return reads.executeAsync(key, k -> metrics.timeReadAsync(() -> getFromConsulAsync(k)));
+    }
+
+    private CompletableFuture<Optional<String>> getFromConsulAsync(String key) {
+
+        CompletableFuture<Optional<String>> future = new CompletableFuture<>();
+
+        getValueAsync(keyPaths.getPath(key), readOptions, future);
+
+        return future;
+    }
+
+    /**
+     * Reads the value with the given consistency mode. If the response is too stale, the value is read again with the
+     * default consistency mode.
+     */
+    private void getValueAsync(String fullKey, QueryOptions options, CompletableFuture<Optional<String>> future) {
+
+        kvClient.getValue(fullKey, options, new ConsulResponseCallback<Optional<Value>>() {
+            @Override
+            public void onComplete(ConsulResponse<Optional<Value>> consulResponse) {
+                if (options != QueryOptions.BLANK && isTooStale(consulResponse)) {
+                    getValueAsync(fullKey, QueryOptions.BLANK, future);
+                    return;
                 }
 
+                Optional<Value> value = consulResponse.getResponse();
+                future.complete((value != null) ? value.flatMap(Value::getValueAsString) : Optional.empty());
             }
-            Collections.sort(arrayIndexes);
 
-            // check if indexes represent an array (are continuous)
-            int listSize = 0;
-            for (Integer i : arrayIndexes) {
-                if (i == listSize) {
-                    listSize += 1;
-                } else {
-                    break;
-                }
+            @Override
+            public void onFailure(Throwable throwable) {
+                log.severe("Consul exception: " + throwable.getLocalizedMessage());
+                future.completeExceptionally(throwable);
             }
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #getListSize(String)}. The client has no asynchronous keys-only request, so the
+     * keys-only request is made on a dedicated executor, see {@link #getChildKeysAsync(String)}.
+     */
+    @Override
+    public CompletableFuture<Optional<Integer>> getListSizeAsync(String key) {
 
-            if (listSize > 0) {
-                return Optional.of(listSize);
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return CompletableFuture.completedFuture(listSize);
             }
         }
 
+        String prefix = keyPaths.getPath(key) + "/";
 
-        return Optional.empty();
-
+        return getChildKeysAsync(prefix).thenApply(keys -> toListSize(prefix, keys));
     }
 
+    /**
+     * Asynchronous variant of {@link #getMapKeys(String)}. The client has no asynchronous keys-only request, so the
+     * keys-only request is made on a dedicated executor, see {@link #getChildKeysAsync(String)}.
+     */
     @Override
-    public Optional<List<String>> getMapKeys(String key) {
+    public CompletableFuture<Optional<List<String>>> getMapKeysAsync(String key) {
 
-        key = this.namespace + "/" + parseKeyNameForConsul(key);
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return CompletableFuture.completedFuture(mapKeys);
+            }
+        }
 
-        Set<String> mapKeys = new HashSet();
+        return getChildKeysAsync(keyPaths.getPath(key) + "/").thenApply(ConsulConfigurationSource::toMapKeys);
+    }
 
-        try {
-            for (String mapKey : kvClient.getKeys(key)) {
+    /**
+     * Asynchronous variant of {@link #getChildKeys(String)}. The keys-only request is made on a small executor shared
+     * by all Consul sources, so neither the caller's thread nor the common fork-join pool waits for the agent.
+     *
+     * @param prefix full key ending with a slash
+     * @return future, completed with child keys or null, if the request failed
+     */
+    private CompletableFuture<List<String>> getChildKeysAsync(String prefix) {
+        return CompletableFuture.supplyAsync(() -> getChildKeys(prefix), ListingExecutorHolder.EXECUTOR);
+    }
+
+    private static class ListingExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(LISTING_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "kumuluzee-config-consul-listing");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns size of the list stored under the given key. Indexes of the list must be continuous.
+     *
+     * @param prefix full key of the list ending with a slash
+     * @param keys   child keys of the list, as returned by {@link #getChildKeys(String)}
+     */
+    private static Optional<Integer> toListSize(String prefix, List<String> keys) {
+        // nested keys of list items (e.g. list/[0]/key) are listed as folders ending with a slash
+        return ListIndexes.getListSize(keys, prefix.length());
+    }
+
+    private static Optional<List<String>> toMapKeys(List<String> keys) {
+
+        Set<String> mapKeys = new HashSet<>();
+
+        if (keys != null) {
+            for (String mapKey : keys) {
                 String[] splittedKey = mapKey.split("/");
                 mapKeys.add(splittedKey[splittedKey.length - 1]);
             }
-        } catch (ConsulException e) {
-            log.severe("Consul exception: " + e.getLocalizedMessage());
         }
 
-        if (mapKeys != null && !mapKeys.isEmpty()) {
+        if (!mapKeys.isEmpty()) {
             return Optional.of(new ArrayList<>(mapKeys));
         }
 
@@ -246,9 +535,24 @@ public class ConsulConfigurationSource implements ConfigurationSource {
     @Override
     public void watch(String key) {
 
-        String fullKey = this.namespace + "/" + parseKeyNameForConsul(key);
+        String fullKey = keyPaths.getPath(key);
+
+        if (watchRegistry != null) {
+            if (watchRegistry.register(key)) {
+                log.info("Registering key " + fullKey + " with namespace watch.");
+            }
+            if (namespaceWatchStarted.compareAndSet(false, true)) {
+                watchNamespace();
+            }
+            return;
+        }
+
+        if (!watchedKeys.add(key)) {
+            return;
+        }
 
         log.info("Initializing watch for key: " + fullKey);
+        metrics.getActiveWatches().inc();
 
         ConsulResponseCallback<List<Value>> callback = new ConsulResponseCallback<List<Value>>() {
 
@@ -273,28 +577,38 @@ public class ConsulConfigurationSource implements ConfigurationSource {
                             Optional<String> valueOpt = v.getValueAsString();
                             String newKey = v.getKey();
 
+                            if (cache != null) {
+                                cache.put(keyPaths.getKey(newKey), valueOpt.orElse(null));
+                            }
+                            updateOrdinal(keyPaths.getKey(newKey), valueOpt.orElse(null));
+
                             if (valueOpt.isPresent() && configurationDispatcher != null) {
-                                log.info("Consul watch callback for key " + parseKeyNameFromConsul(newKey) +
+                                log.info("Consul watch callback for key " + keyPaths.getKey(newKey) +
                                         " invoked. " + "New value: " + valueOpt.get());
                                 configurationDispatcher.notifyChange(
-                                        parseKeyNameFromConsul(newKey),
+                                        keyPaths.getKey(newKey),
                                         ConfigurationDecoderUtils.decodeConfigValueIfEncoded(
-                                                parseKeyNameFromConsul(newKey),
+                                                keyPaths.getKey(newKey),
                                                 valueOpt.get()));
                                 previouslyDeleted = false;
                             } else {
-                                log.info("Consul watch callback for key " + parseKeyNameFromConsul(newKey) +
+                                log.info("Consul watch callback for key " + keyPaths.getKey(newKey) +
                                         " invoked. No value present, fallback to other configuration sources.");
                                 ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
-                                String fallbackConfig = configurationUtil.get(parseKeyNameFromConsul(newKey)).orElse
+                                String fallbackConfig = configurationUtil.get(keyPaths.getKey(newKey)).orElse
                                         (null);
                                 if (fallbackConfig != null) {
-                                    configurationDispatcher.notifyChange(parseKeyNameFromConsul(newKey),
+                                    configurationDispatcher.notifyChange(keyPaths.getKey(newKey),
                                             fallbackConfig);
                                 }
                             }
                         }
                     } else if (!previouslyDeleted) {
+                        if (cache != null) {
+                            cache.remove(key);
+                        }
+                        updateOrdinal(key, null);
+
                         log.info("Consul watch callback for key " + fullKey +
                                 " invoked. No value present, fallback to other configuration sources.");
                         ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
@@ -308,6 +622,7 @@ public class ConsulConfigurationSource implements ConfigurationSource {
 
                 index.set(consulResponse.getIndex());
 
+                metrics.getWatchRearms().inc();
                 watch();
             }
 
@@ -318,34 +633,232 @@ public class ConsulConfigurationSource implements ConfigurationSource {
 
             @Override
             public void onFailure(Throwable throwable) {
-                if (throwable instanceof ConnectException) {
-                    try {
-                        Thread.sleep(currentRetryDelay);
-                    } catch (InterruptedException ignored) {
+                if (!(throwable instanceof ConnectException)) {
+                    log.severe("Watch error: " + throwable.getLocalizedMessage());
+                }
+
+                // retry is scheduled on the shared scheduler, so the HTTP client thread is released
+                metrics.getRetries().inc();
+                RetryScheduler.schedule(this::watch, RetryScheduler.getJitteredDelay(currentRetryDelay));
+
+                // exponential increase, limited by maxRetryDelay
+                currentRetryDelay = RetryScheduler.getNextDelay(currentRetryDelay, maxRetryDelay);
+            }
+        };
+
+        kvClient.getValues(fullKey, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, new BigInteger("0")).build(),
+                callback);
+
+
+    }
+
+    /**
+     * Places a single blocking query on the namespace. Changes are detected by comparing modify indexes of keys and
+     * routed to keys in the watch registry.
+     */
+    private void watchNamespace() {
+
+        String namespacePrefix = this.namespace + "/";
+
+        log.info("Initializing watch for namespace: " + this.namespace);
+        metrics.getActiveWatches().inc();
+
+        ConsulResponseCallback<List<Value>> callback = new ConsulResponseCallback<List<Value>>() {
+
+            AtomicReference<BigInteger> index = new AtomicReference<>(new BigInteger("0"));
+
+            // modify indexes and values of keys from the last response, used to detect changes
+            Map<String, Value> previousValues = null;
+
+            int currentRetryDelay = startRetryDelay;
+
+            @Override
+            public void onComplete(ConsulResponse<List<Value>> consulResponse) {
+                // successful request, reset delay
+                currentRetryDelay = startRetryDelay;
+
+                if (index.get() != null && !index.get().equals(consulResponse.getIndex())) {
+
+                    Map<String, Value> currentValues = new HashMap<>();
+                    if (consulResponse.getResponse() != null) {
+                        for (Value v : consulResponse.getResponse()) {
+                            // skip folders
+                            if (!v.getKey().endsWith("/")) {
+                                currentValues.put(keyPaths.getKey(v.getKey()), v);
+                            }
+                        }
                     }
 
-                    // exponential increase, limited by maxRetryDelay
-                    currentRetryDelay *= 2;
-                    if (currentRetryDelay > maxRetryDelay) {
-                        currentRetryDelay = maxRetryDelay;
+                    if (previousValues != null) {
+                        for (Map.Entry<String, Value> entry : currentValues.entrySet()) {
+                            Value previous = previousValues.get(entry.getKey());
+                            if (previous == null || previous.getModifyIndex() != entry.getValue().getModifyIndex()) {
+                                onValueChanged(entry.getKey(), entry.getValue().getValueAsString().orElse(null));
+                            }
+                        }
+                        for (String previousKey : previousValues.keySet()) {
+                            if (!currentValues.containsKey(previousKey)) {
+                                onValueChanged(previousKey, null);
+                            }
+                        }
+                    } else if (cache != null) {
+                        compareWithCache(currentValues);
                     }
-                } else {
-                    log.severe("Watch error: " + throwable.getLocalizedMessage());
+
+                    previousValues = currentValues;
                 }
 
+                index.set(consulResponse.getIndex());
+
+                metrics.getWatchRearms().inc();
                 watch();
             }
+
+            /**
+             * Dispatches keys changed since the cache was loaded, before the watch was started. Keys missing from an
+             * incomplete cache were never read, so only cached keys are compared then.
+             */
+            void compareWithCache(Map<String, Value> currentValues) {
+                Map<String, String> cachedValues = cache.getValues();
+                boolean complete = cache.isComplete();
+
+                for (Map.Entry<String, Value> entry : currentValues.entrySet()) {
+                    String value = entry.getValue().getValueAsString().orElse(null);
+                    String cached = cachedValues.get(entry.getKey());
+                    if ((cached != null || complete) && !Objects.equals(cached, value)) {
+                        onValueChanged(entry.getKey(), value);
+                    }
+                }
+                for (String cachedKey : cachedValues.keySet()) {
+                    if (!currentValues.containsKey(cachedKey)) {
+                        onValueChanged(cachedKey, null);
+                    }
+                }
+            }
+
+            void onValueChanged(String changedKey, String newValue) {
+                if (cache != null) {
+                    cache.put(changedKey, newValue);
+                }
+
+                for (String key : watchRegistry.getAffectedKeys(changedKey)) {
+                    String value = key.equals(changedKey) ? newValue : null;
+                    log.info("Consul watch callback for key " + key + " invoked. New value: " + value);
+                    notifyChange(key, value);
+                }
+            }
+
+            void watch() {
+                kvClient.getValues(namespacePrefix,
+                        QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, index.get()).build(), this);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                if (!(throwable instanceof ConnectException)) {
+                    log.severe("Watch error: " + throwable.getLocalizedMessage());
+                }
+
+                // retry is scheduled on the shared scheduler, so the HTTP client thread is released
+                metrics.getRetries().inc();
+                RetryScheduler.schedule(this::watch, RetryScheduler.getJitteredDelay(currentRetryDelay));
+
+                // exponential increase, limited by maxRetryDelay
+                currentRetryDelay = RetryScheduler.getNextDelay(currentRetryDelay, maxRetryDelay);
+            }
         };
 
-        kvClient.getValues(fullKey, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, new BigInteger("0")).build(),
-                callback);
+        kvClient.getValues(namespacePrefix,
+                QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, new BigInteger("0")).build(), callback);
+    }
 
+    /**
+     * Notifies dispatcher about a changed value. If value was deleted, value from other configuration sources is used.
+     */
+    private void notifyChange(String key, String value) {
+        updateOrdinal(key, value);
+
+        if (configurationDispatcher == null) {
+            return;
+        }
 
+        if (value != null) {
+            configurationDispatcher.notifyChange(key,
+                    ConfigurationDecoderUtils.decodeConfigValueIfEncoded(key, value));
+        } else {
+            ConfigurationUtil.getInstance().get(key)
+                    .ifPresent(fallbackConfig -> configurationDispatcher.notifyChange(key, fallbackConfig));
+        }
     }
 
     @Override
     public void set(@Nonnull String key, @Nonnull String value) {
-        kvClient.putValue(parseKeyNameForConsul(key), value);
+        kvClient.putValue(keyPaths.getPath(key), value);
+    }
+
+    /**
+     * Writes values using Consul transactions. Each transaction holds up to 64 operations and is applied atomically;
+     * if a transaction is rolled back, all of its keys are reported as failed.
+     */
+    @Override
+    public BatchWriteResult set(Map<String, String> values) {
+
+        if (kvClient == null) {
+            return BatchWriteResult.failed(values.keySet(), "Consul client not initialized.", 0);
+        }
+
+        List<String> keys = new ArrayList<>(values.keySet());
+        List<String> writtenKeys = new ArrayList<>();
+        Map<String, String> failedKeys = new HashMap<>();
+        int requests = 0;
+
+        for (int from = 0; from < keys.size(); from += CONSUL_TXN_MAX_OPERATIONS) {
+            List<String> chunk = keys.subList(from, Math.min(from + CONSUL_TXN_MAX_OPERATIONS, keys.size()));
+
+            Operation[] operations = new Operation[chunk.size()];
+            for (int i = 0; i < operations.length; i++) {
+                String key = chunk.get(i);
+                operations[i] = Operation.builder(Verb.SET)
+                        .key(keyPaths.getPath(key))
+                        .value(values.get(key))
+                        .build();
+            }
+
+            requests++;
+            try {
+                ConsulResponse<TxResponse> response = kvClient.performTransaction(operations);
+                List<TxError> errors = (response.getResponse() != null) ? response.getResponse().errors() : null;
+
+                if (errors == null || errors.isEmpty()) {
+                    writtenKeys.addAll(chunk);
+                } else {
+                    addFailedKeys(failedKeys, chunk, errors);
+                }
+            } catch (ConsulException e) {
+                log.severe("Consul exception: " + e.getLocalizedMessage());
+                chunk.forEach(key -> failedKeys.put(key, e.getLocalizedMessage()));
+            }
+        }
+
+        return new BatchWriteResult(writtenKeys, failedKeys, requests);
+    }
+
+    /**
+     * Marks all keys of a rolled back transaction as failed, keys which caused the rollback get the reported error.
+     */
+    private void addFailedKeys(Map<String, String> failedKeys, List<String> chunk, List<TxError> errors) {
+
+        String rollbackReason = "Transaction rolled back.";
+        for (String key : chunk) {
+            failedKeys.put(key, rollbackReason);
+        }
+
+        for (TxError error : errors) {
+            String what = error.what().orElse(rollbackReason);
+            if (error.opIndex().isPresent() && error.opIndex().get().intValue() < chunk.size()) {
+                failedKeys.put(chunk.get(error.opIndex().get().intValue()), what);
+            }
+        }
     }
 
     @Override
@@ -370,16 +883,58 @@ public class ConsulConfigurationSource implements ConfigurationSource {
 
     @Override
     public Integer getOrdinal() {
-        return getInteger(CONFIG_ORDINAL).orElse(110);
+        return ordinal;
     }
 
-    private String parseKeyNameFromConsul(String key) {
-        return key.substring(this.namespace.length() + 1).replace("/", ".").replace(".[", "[");
+    /**
+     * Updates the cached ordinal, if the changed key is the ordinal key. Removed ordinal falls back to the default.
+     */
+    private void updateOrdinal(String key, String value) {
+        if (CONFIG_ORDINAL.equals(key)) {
+            ordinal = ParseUtils.parseOptionalStringToOptionalInteger(Optional.ofNullable(value))
+                    .orElse(DEFAULT_ORDINAL);
+        }
     }
 
-    private String parseKeyNameForConsul(String key) {
+    /**
+     * Reads the whole namespace with a single recursive request and stores it in the cache.
+     *
+     * @return keys, which were changed or removed, or null if the namespace could not be read
+     */
+    private Set<String> preload() {
+
+        long start = System.currentTimeMillis();
 
-        return key.replace("[", ".[").replace(".", "/");
+        Map<String, String> values = new HashMap<>();
+
+        try {
+            ConsulResponse<List<Value>> response = kvClient.getConsulResponseWithValues(this.namespace + "/",
+                    readOptions);
+            if (isTooStale(response)) {
+                response = kvClient.getConsulResponseWithValues(this.namespace + "/", QueryOptions.BLANK);
+            }
+            // empty or missing namespace is answered with 404 and no body
+            if (response.getResponse() != null) {
+                for (Value v : response.getResponse()) {
+                    Optional<String> value = v.getValueAsString();
+                    if (value.isPresent()) {
+                        values.put(keyPaths.getKey(v.getKey()), value.get());
+                    }
+                }
+            }
+        } catch (ConsulException e) {
+            log.severe("Cannot load namespace into cache. Consul exception: " + e.getLocalizedMessage());
+            return null;
+        }
+
+        Set<String> changedKeys = cache.load(values);
+        if (preload) {
+            log.info("Preloaded " + values.size() + " configuration values in " +
+                    (System.currentTimeMillis() - start) + " ms.");
+        } else {
+            log.info("Loaded " + values.size() + " configuration values into cache.");
+        }
 
+        return changedKeys;
     }
 }
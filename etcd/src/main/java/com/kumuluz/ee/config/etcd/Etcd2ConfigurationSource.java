@@ -22,36 +22,56 @@
 package com.kumuluz.ee.config.etcd;
 
 import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.AsyncConfigurationSource;
+import com.kumuluz.ee.config.BatchConfigurationSource;
+import com.kumuluz.ee.config.BatchWriteResult;
+import com.kumuluz.ee.config.cache.ConfigurationCache;
+import com.kumuluz.ee.config.cache.SnapshotFile;
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.metrics.ConfigMetricsRegistry;
 import com.kumuluz.ee.config.utils.InitializationUtils;
+import com.kumuluz.ee.config.utils.KeyPathCache;
+import com.kumuluz.ee.config.utils.ListIndexes;
 import com.kumuluz.ee.config.utils.ParseUtils;
-import com.kumuluz.ee.configuration.ConfigurationSource;
+import com.kumuluz.ee.config.utils.RetryScheduler;
+import com.kumuluz.ee.config.utils.SingleFlight;
+import com.kumuluz.ee.config.watch.CoalescingConfigurationDispatcher;
+import com.kumuluz.ee.config.watch.WatchRegistry;
 import com.kumuluz.ee.configuration.utils.ConfigurationDecoderUtils;
 import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.util.concurrent.BlockingOperationException;
+import mousio.client.ConnectionState;
 import mousio.client.retry.RetryOnce;
+import mousio.client.retry.RetryPolicy;
 import mousio.client.retry.RetryWithExponentialBackOff;
 import mousio.etcd4j.EtcdClient;
 import mousio.etcd4j.EtcdSecurityContext;
 import mousio.etcd4j.promises.EtcdResponsePromise;
+import mousio.etcd4j.requests.EtcdKeyGetRequest;
 import mousio.etcd4j.responses.EtcdAuthenticationException;
 import mousio.etcd4j.responses.EtcdErrorCode;
 import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeyAction;
 import mousio.etcd4j.responses.EtcdKeysResponse;
 
 import javax.net.ssl.SSLException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLEncoder;
+import java.nio.file.Path;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -61,15 +81,30 @@ import java.util.logging.Logger;
  * @author Jan Meznarič
  * @since 1.0.0
  */
-public class Etcd2ConfigurationSource implements ConfigurationSource {
+public class Etcd2ConfigurationSource implements BatchConfigurationSource, AsyncConfigurationSource {
 
     private static final Logger log = Logger.getLogger(Etcd2ConfigurationSource.class.getName());
 
+    private static final int DEFAULT_ORDINAL = 110;
+    private static final long DEFAULT_PROBE_INTERVAL_MS = 5000;
+
     private EtcdClient etcd;
+    private EtcdHostSelector hostSelector;
     private ConfigurationDispatcher configurationDispatcher;
     private String namespace;
+    private KeyPathCache keyPaths;
+    private volatile int ordinal = DEFAULT_ORDINAL;
     private int startRetryDelay;
     private int maxRetryDelay;
+    private ConfigurationCache cache;
+    private boolean preload;
+    private final SingleFlight<String, Optional<String>> reads = new SingleFlight<>();
+    private final ConfigMetrics metrics = ConfigMetricsRegistry.getMetrics("etcd");
+    private volatile Long cacheIndex;
+    private WatchRegistry watchRegistry = new WatchRegistry();
+    private boolean namespaceWatch;
+    private final AtomicBoolean namespaceWatchStarted = new AtomicBoolean(false);
+    private final AtomicInteger activeWatches = new AtomicInteger();
 
     private EeConfig eeConfig;
 
@@ -80,11 +115,12 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
     @Override
     public void init(ConfigurationDispatcher configurationDispatcher) {
 
-        this.configurationDispatcher = configurationDispatcher;
-
         ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+        this.configurationDispatcher = CoalescingConfigurationDispatcher.wrap(configurationDispatcher,
+                InitializationUtils.getDispatchWindowMs(configurationUtil, "etcd"), metrics);
         // get namespace
         this.namespace = InitializationUtils.getNamespace(eeConfig, configurationUtil, "etcd");
+        this.keyPaths = KeyPathCache.forEtcd(this.namespace);
         log.log(Level.INFO, "Using namespace: {0}", this.namespace);
 
         // get user credentials
@@ -153,11 +189,52 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
 
             etcd.setRetryHandler(new RetryOnce(0));
 
+            // reads are routed to the healthiest host, watches and writes use the client of the whole cluster
+            hostSelector = new EtcdHostSelector(etcd, etcdHosts, etcdSecurityContext, metrics);
+            hostSelector.startProbing(keyPaths.getPath(CONFIG_ORDINAL),
+                    configurationUtil.getLong("kumuluzee.config.etcd.probe-interval-ms")
+                            .orElse(DEFAULT_PROBE_INTERVAL_MS));
+
             // get retry dellays
             startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "etcd");
             maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "etcd");
 
-            log.info("etcd2 configuration source successfully initialized.");
+            preload = InitializationUtils.isPreloadEnabled(configurationUtil, "etcd");
+            boolean cacheLazy = InitializationUtils.isCacheLazy(configurationUtil, "etcd");
+            Optional<Path> snapshotPath = InitializationUtils.getSnapshotFile(configurationUtil, "etcd", namespace);
+            SnapshotFile snapshot = null;
+            boolean restored = false;
+            if (preload || snapshotPath.isPresent() || InitializationUtils.isCacheEnabled(configurationUtil, "etcd")) {
+                cache = new ConfigurationCache(metrics);
+                cache.setExpiration(InitializationUtils.getCacheTtlPolicy(configurationUtil, "etcd"), this::readAsync);
+                if (snapshotPath.isPresent()) {
+                    snapshot = new SnapshotFile(snapshotPath.get(), namespace, cache);
+                    restored = snapshot.restore();
+                    snapshot.persist();
+                }
+                if (!restored && (preload || snapshot != null || !cacheLazy)) {
+                    preload();
+                }
+            }
+
+            namespaceWatch = InitializationUtils.isNamespaceWatchEnabled(configurationUtil, "etcd");
+
+            // resolve ordinal once, the watch keeps it up to date
+            ordinal = getInteger(CONFIG_ORDINAL).orElse(DEFAULT_ORDINAL);
+            watch(CONFIG_ORDINAL);
+
+            if (snapshot != null && !cache.isComplete()) {
+                // snapshot is written only after the whole namespace was read, keep reading it in background
+                snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+            }
+
+            if (restored) {
+                // serve values from the snapshot, reconcile with etcd in background
+                snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+                log.info("etcd2 configuration source initialized from snapshot, reconciling with etcd in background.");
+            } else {
+                log.info("etcd2 configuration source successfully initialized.");
+            }
 
         } else {
             log.severe("No etcd server hosts provided. Specify hosts with configuration key" +
@@ -167,24 +244,74 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
 
     }
 
+    /**
+     * Stops probing of etcd hosts and closes the clients, which also ends the watches.
+     */
+    public void close() {
+
+        for (int i = activeWatches.getAndSet(0); i > 0; i--) {
+            metrics.getActiveWatches().dec();
+        }
+
+        if (hostSelector != null) {
+            hostSelector.close();
+        }
+
+        if (etcd != null) {
+            try {
+                etcd.close();
+            } catch (IOException e) {
+                log.warning("Error closing etcd client: " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public Optional<String> get(String key) {
 
-        key = namespace + "/" + parseKeyNameForEtcd(key);
+        if (cache != null) {
+            return cache.get(key, this::load);
+        }
+
+        return load(key);
+    }
+
+    /**
+     * Returns parsed value of the given key. With caching enabled, the parsed value is cached alongside the raw value.
+     */
+    private <T> Optional<T> getParsed(String key, Class<T> type, Function<Optional<String>, Optional<T>> parser) {
+
+        if (cache != null) {
+            return cache.get(key, this::load, type, parser);
+        }
+
+        return parser.apply(get(key));
+    }
+
+    /**
+     * Reads the value from etcd. Concurrent reads of the same key share a single request.
+     */
+    private Optional<String> load(String key) {
+        return reads.execute(key, k -> metrics.timeRead(() -> getFromEtcd(k)));
+    }
+
+    private Optional<String> getFromEtcd(String key) {
+
+        String fullKey = keyPaths.getPath(key);
 
         String value = null;
 
         if (etcd != null) {
             try {
-                value = etcd.get(key).send().get().getNode().getValue();
+                value = hostSelector.send(client -> client.get(fullKey)).getNode().getValue();
             } catch (IOException e) {
-                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (EtcdException e) {
-                log.fine("etcd: " + e + " Key: " + key);
+                log.fine("etcd: " + e + " Key: " + fullKey);
             } catch (EtcdAuthenticationException e) {
-                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (TimeoutException e) {
-                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + key);
+                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + fullKey);
             }
 
             if (value != null) {
@@ -199,77 +326,68 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
 
     @Override
     public Optional<Boolean> getBoolean(String key) {
-        return ParseUtils.parseOptionalStringToOptionalBoolean(get(key));
+        return getParsed(key, Boolean.class, ParseUtils::parseOptionalStringToOptionalBoolean);
     }
 
     @Override
     public Optional<Integer> getInteger(String key) {
-        return ParseUtils.parseOptionalStringToOptionalInteger(get(key));
+        return getParsed(key, Integer.class, ParseUtils::parseOptionalStringToOptionalInteger);
     }
 
     @Override
     public Optional<Long> getLong(String key) {
-        return ParseUtils.parseOptionalStringToOptionalLong(get(key));
+        return getParsed(key, Long.class, ParseUtils::parseOptionalStringToOptionalLong);
     }
 
     @Override
     public Optional<Double> getDouble(String key) {
-        return ParseUtils.parseOptionalStringToOptionalDouble(get(key));
+        return getParsed(key, Double.class, ParseUtils::parseOptionalStringToOptionalDouble);
     }
 
     @Override
     public Optional<Float> getFloat(String key) {
-        return ParseUtils.parseOptionalStringToOptionalFloat(get(key));
+        return getParsed(key, Float.class, ParseUtils::parseOptionalStringToOptionalFloat);
     }
 
 
+    /**
+     * Map keys and list sizes are answered from the index of cached keys only while the namespace watch keeps the
+     * whole cached namespace up to date, otherwise keys added on the server would be missing from the index.
+     */
+    private boolean isKeyIndexCurrent() {
+        return cache != null && cache.isComplete() && namespaceWatchStarted.get();
+    }
+
     @Override
     public Optional<Integer> getListSize(String key) {
 
-        // get directory
-        key = namespace + "/" + parseKeyNameForEtcd(key);
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return listSize;
+            }
+        }
+
+        // get directory, API v2 cannot list keys without values, so the listing is not recursive and only values of
+        // direct children are transferred
+        String fullKey = keyPaths.getPath(key);
         EtcdKeysResponse.EtcdNode node = null;
 
         if (etcd != null) {
             try {
-                node = etcd.getDir(key).send().get().getNode();
+                node = hostSelector.send(client -> client.getDir(fullKey)).getNode();
             } catch (IOException e) {
-                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (EtcdException e) {
-                log.fine("etcd: " + e + " Key: " + key);
+                log.fine("etcd: " + e + " Key: " + fullKey);
             } catch (EtcdAuthenticationException e) {
-                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (TimeoutException e) {
-                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + key);
+                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + fullKey);
             }
 
             if (node != null) {
-                // get array indexes
-                List<Integer> arrayIndexes = new ArrayList<>();
-                for (EtcdKeysResponse.EtcdNode n : node.getNodes()) {
-                    String nodeKey = n.getKey();
-                    try {
-                        arrayIndexes.add(Integer.parseInt(nodeKey.substring(key.length() + 3, nodeKey.length() - 1)));
-                    } catch (NumberFormatException e) {
-                        // ignored
-                    }
-
-                }
-                Collections.sort(arrayIndexes);
-
-                // check if indexes represent an array (are continuous)
-                int listSize = 0;
-                for (Integer i : arrayIndexes) {
-                    if (i == listSize) {
-                        listSize += 1;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (listSize > 0) {
-                    return Optional.of(listSize);
-                }
+                return toListSize(fullKey, node);
             }
         }
 
@@ -280,111 +398,474 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
     @Override
     public Optional<List<String>> getMapKeys(String key) {
 
-        key = namespace + "/" + parseKeyNameForEtcd(key);
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return mapKeys;
+            }
+        }
+
+        String fullKey = keyPaths.getPath(key);
 
         if (etcd != null) {
 
             List<EtcdKeysResponse.EtcdNode> nodes = null;
             try {
-                nodes = etcd.getDir(key).send().get().getNode().getNodes();
+                nodes = hostSelector.send(client -> client.getDir(fullKey)).getNode().getNodes();
             } catch (IOException e) {
-                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("IO Exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (EtcdException e) {
-                log.fine("etcd: " + e + " Key: " + key);
+                log.fine("etcd: " + e + " Key: " + fullKey);
             } catch (EtcdAuthenticationException e) {
-                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + key);
+                log.severe("Etcd authentication exception. Cannot read given key: " + e + " Key: " + fullKey);
             } catch (TimeoutException e) {
-                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + key);
+                log.severe("Timeout exception. Cannot read given key time: " + e + " Key: " + fullKey);
             }
 
-            Set<String> mapKeys = new HashSet<>();
-            if (nodes != null) {
-                for (EtcdKeysResponse.EtcdNode node : nodes) {
-                    String[] splittedKey = node.getKey().split("/");
-                    mapKeys.add(splittedKey[splittedKey.length - 1]);
-                }
+            return toMapKeys(nodes);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAsync(String key) {
+
+        if (cache != null) {
+            return cache.getAsync(key, this::loadAsync);
+        }
+
+        return loadAsync(key);
+    }
+
+    private CompletableFuture<Optional<String>> loadAsync(String key) {
+        // errors are logged and reported as absent values
+        return readAsync(key).exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Reads the value from etcd. Concurrent reads of the same key share a single request. Unlike
+     * {@link #loadAsync(String)}, the returned future is completed exceptionally if the value could not be read, so
+     * a failed refresh of an expired value keeps the cached value.
+     */
+    private CompletableFuture<Optional<String>> readAsync(String key) {
+        return reads.executeAsync(key, k -> metrics.timeReadAsync(() -> getFromEtcdAsync(k)));
+    }
+
+    private CompletableFuture<Optional<String>> getFromEtcdAsync(String key) {
+
+        if (etcd == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String fullKey = keyPaths.getPath(key);
+
+        return sendAsync(client -> client.get(fullKey), fullKey)
+                .thenApply(response -> (response != null) ?
+                        Optional.ofNullable(response.getNode().getValue()) :
+                        Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<Optional<Integer>> getListSizeAsync(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return CompletableFuture.completedFuture(listSize);
             }
+        }
 
-            if (mapKeys.isEmpty()) {
-                return Optional.empty();
+        if (etcd == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String fullKey = keyPaths.getPath(key);
+
+        return sendAsync(client -> client.getDir(fullKey), fullKey)
+                .thenApply(response -> (response != null) ? toListSize(fullKey, response.getNode()) :
+                        Optional.<Integer>empty())
+                .exceptionally(e -> Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<Optional<List<String>>> getMapKeysAsync(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return CompletableFuture.completedFuture(mapKeys);
+            }
+        }
+
+        if (etcd == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String fullKey = keyPaths.getPath(key);
+
+        return sendAsync(client -> client.getDir(fullKey), fullKey)
+                .thenApply(response -> (response != null) ? toMapKeys(response.getNode().getNodes()) :
+                        Optional.<List<String>>empty())
+                .exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Sends the request to the healthiest host without waiting for the response. If the key is not found, the
+     * returned future is completed with null. Other errors are logged and complete the future exceptionally.
+     */
+    private CompletableFuture<EtcdKeysResponse> sendAsync(Function<EtcdClient, EtcdKeyGetRequest> request,
+                                                          String fullKey) {
+
+        CompletableFuture<EtcdKeysResponse> future = new CompletableFuture<>();
+
+        hostSelector.sendAsync(request).whenComplete((response, e) -> {
+            if (e == null) {
+                future.complete(response);
+            } else if (e instanceof EtcdException && ((EtcdException) e).isErrorCode(EtcdErrorCode.KeyNotFound)) {
+                log.fine("etcd: " + e + " Key: " + fullKey);
+                future.complete(null);
             } else {
-                return Optional.of(new ArrayList<>(mapKeys));
+                log.severe("Cannot read given key: " + e + " Key: " + fullKey);
+                future.completeExceptionally(e);
             }
-        } else {
+        });
+
+        return future;
+    }
+
+    /**
+     * Returns size of the list stored in the given directory node. Indexes of the list must be continuous.
+     */
+    private static Optional<Integer> toListSize(String fullKey, EtcdKeysResponse.EtcdNode node) {
+
+        // node keys start with a slash, followed by the full key and a slash (e.g. /namespace/list/[0])
+        ListIndexes listIndexes = new ListIndexes(node.getNodes().size());
+        for (EtcdKeysResponse.EtcdNode n : node.getNodes()) {
+            listIndexes.add(n.getKey(), fullKey.length() + 2);
+        }
+
+        return listIndexes.getListSize();
+    }
+
+    private static Optional<List<String>> toMapKeys(List<EtcdKeysResponse.EtcdNode> nodes) {
+
+        Set<String> mapKeys = new HashSet<>();
+        if (nodes != null) {
+            for (EtcdKeysResponse.EtcdNode node : nodes) {
+                String[] splittedKey = node.getKey().split("/");
+                mapKeys.add(splittedKey[splittedKey.length - 1]);
+            }
+        }
+
+        if (mapKeys.isEmpty()) {
             return Optional.empty();
+        } else {
+            return Optional.of(new ArrayList<>(mapKeys));
         }
     }
 
     public void watch(String key) {
 
-        String fullKey = namespace + "/" + parseKeyNameForEtcd(key);
+        String fullKey = keyPaths.getPath(key);
 
         if (etcd != null) {
-            log.log(Level.INFO, "Initializing watch for key: {0}", fullKey);
-            try {
-                EtcdResponsePromise<EtcdKeysResponse> responsePromise = etcd.getDir(fullKey).recursive()
-                        .setRetryPolicy(new RetryWithExponentialBackOff(startRetryDelay, -1, maxRetryDelay))
-                        .waitForChange().send();
+            boolean registered = watchRegistry.register(key);
+
+            if (namespaceWatch) {
+                if (registered) {
+                    log.log(Level.INFO, "Registering key {0} with namespace watch.", fullKey);
+                }
+                if (namespaceWatchStarted.compareAndSet(false, true)) {
+                    log.log(Level.INFO, "Initializing watch for namespace: {0}", namespace);
+                    watchStarted();
+                    watchNamespace(getStartWaitIndex());
+                }
+            } else if (registered) {
+                log.log(Level.INFO, "Initializing watch for key: {0}", fullKey);
+                watchStarted();
+                watchKey(key, getStartWaitIndex());
+            }
+        }
+    }
 
-                responsePromise.addListener(promise -> {
+    private void watchStarted() {
+        activeWatches.incrementAndGet();
+        metrics.getActiveWatches().inc();
+    }
 
-                    Throwable t = promise.getException();
-                    if (t instanceof EtcdException) {
-                        if (((EtcdException) t).isErrorCode(EtcdErrorCode.NodeExist)) {
-                            log.log(Level.SEVERE, "Exception in etcd promise: {0}", ((EtcdException) t).etcdMessage);
-                        }
+    private void watchEnded() {
+        if (activeWatches.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+            metrics.getActiveWatches().dec();
+        }
+    }
+
+    /**
+     * Places a watch on the given key. Watch is resumed from the index following the last seen modification, so no
+     * change is missed between consecutive watch requests.
+     *
+     * @param key       key in KumuluzEE format
+     * @param waitIndex etcd index to wait from, null to wait for the next change
+     */
+    private void watchKey(String key, Long waitIndex) {
+
+        String fullKey = keyPaths.getPath(key);
+
+        try {
+            EtcdResponsePromise<EtcdKeysResponse> responsePromise = waitForChange(etcd.getDir(fullKey).recursive()
+                    .setRetryPolicy(getWatchRetryPolicy()),
+                    waitIndex).send();
+
+            responsePromise.addListener(promise -> {
+
+                Throwable t = promise.getException();
+                if (t instanceof EtcdException) {
+                    if (((EtcdException) t).isErrorCode(EtcdErrorCode.NodeExist)) {
+                        log.log(Level.SEVERE, "Exception in etcd promise: {0}", ((EtcdException) t).etcdMessage);
+                    }
+                }
+
+                EtcdKeysResponse response = null;
+                try {
+                    response = promise.get();
+                    if (response != null) {
+                        String newValue = response.node.value;
+                        String newKey = response.node.key;
+                        log.log(Level.INFO, "Value changed. Key: {0} New value: {1}",
+                                new String[]{keyPaths.getKey(newKey), newValue});
+
+                        updateCache(response);
+                        notifyChange(keyPaths.getKey(newKey), newValue);
+
+                        metrics.getWatchRearms().inc();
+                        watchKey(key, response.node.modifiedIndex + 1);
+                    } else {
+                        metrics.getWatchRearms().inc();
+                        watchKey(key, waitIndex);
+                    }
+
+                } catch (EtcdException e) {
+                    if (e.isErrorCode(EtcdErrorCode.EventIndexCleared)) {
+                        log.log(Level.WARNING, "Watch index for key {0} cleared, re-reading values.", fullKey);
+                        resync(key, index -> {
+                            metrics.getWatchRearms().inc();
+                            watchKey(key, index);
+                        });
+                    } else {
+                        log.severe("Exception retrieving key value in watch. Exception: " + e.toString());
+                        watchEnded();
                     }
+                } catch (BlockingOperationException e) {
+                    // retry -- get key value and set a new watch
+                    configurationDispatcher.notifyChange(key, ConfigurationUtil.getInstance().get(key).orElse
+                            (null));
+                    metrics.getWatchRearms().inc();
+                    watchKey(key, waitIndex);
+                } catch (Exception e) {
+                    log.severe("Exception retrieving key value in watch. Exception: " + e.toString());
+                    watchEnded();
+                }
+            });
 
-                    EtcdKeysResponse response = null;
-                    try {
-                        response = promise.get();
-                        if (response != null) {
-                            String newValue = response.node.value;
-                            String newKey = response.node.key;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unknown etcd exception. Message: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Places a single recursive watch on the namespace. Changes are routed to keys in the watch registry.
+     *
+     * @param waitIndex etcd index to wait from, null to wait for the next change
+     */
+    private void watchNamespace(Long waitIndex) {
+        try {
+            EtcdResponsePromise<EtcdKeysResponse> responsePromise = waitForChange(etcd.getDir(namespace).recursive()
+                    .setRetryPolicy(getWatchRetryPolicy()),
+                    waitIndex).send();
+
+            responsePromise.addListener(promise -> {
+                try {
+                    EtcdKeysResponse response = promise.get();
+                    if (response != null && !isNamespaceKey(response.node.key)) {
+                        // namespace directory itself was created or deleted, re-read the whole namespace
+                        long nextIndex = response.node.modifiedIndex + 1;
+                        resync(null, index -> {
+                            metrics.getWatchRearms().inc();
+                            watchNamespace((index != null) ? index : nextIndex);
+                        });
+                    } else if (response != null) {
+                        String changedKey = keyPaths.getKey(response.node.key);
+
+                        updateCache(response);
+
+                        for (String key : watchRegistry.getAffectedKeys(changedKey)) {
+                            String newValue = key.equals(changedKey) ? response.node.value : null;
                             log.log(Level.INFO, "Value changed. Key: {0} New value: {1}",
-                                    new String[]{parseKeyNameFromEtcd(newKey), newValue});
-
-                            if (configurationDispatcher != null) {
-                                if (newValue != null) {
-                                    configurationDispatcher
-                                            .notifyChange(
-                                                    parseKeyNameFromEtcd(newKey),
-                                                    ConfigurationDecoderUtils.decodeConfigValueIfEncoded(
-                                                            parseKeyNameFromEtcd(newKey),
-                                                            newValue));
-                                } else {
-                                    ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
-                                    String fallbackConfig = configurationUtil.get(parseKeyNameFromEtcd(newKey))
-                                            .orElse(null);
-                                    if (fallbackConfig != null) {
-                                        configurationDispatcher.notifyChange(key, fallbackConfig);
-                                    }
-                                }
-                            }
+                                    new String[]{key, newValue});
+                            notifyChange(key, newValue);
                         }
 
-                        watch(key);
+                        metrics.getWatchRearms().inc();
+                        watchNamespace(response.node.modifiedIndex + 1);
+                    } else {
+                        metrics.getWatchRearms().inc();
+                        watchNamespace(waitIndex);
+                    }
 
-                    } catch (BlockingOperationException e) {
-                        // retry -- get key value and set a new watch
-                        configurationDispatcher.notifyChange(key, ConfigurationUtil.getInstance().get(key).orElse
-                                (null));
-                        watch(key);
-                    } catch (Exception e) {
-                        log.severe("Exception retrieving key value in watch. Exception: " + e.toString());
+                } catch (EtcdException e) {
+                    if (e.isErrorCode(EtcdErrorCode.EventIndexCleared)) {
+                        log.warning("Watch index for namespace cleared, re-reading values.");
+                        resync(null, index -> {
+                            metrics.getWatchRearms().inc();
+                            watchNamespace(index);
+                        });
+                    } else {
+                        log.severe("Exception retrieving key value in namespace watch. Exception: " + e.toString());
+                        rearmNamespaceWatchLater(waitIndex);
                     }
-                });
+                } catch (BlockingOperationException e) {
+                    metrics.getWatchRearms().inc();
+                    watchNamespace(waitIndex);
+                } catch (Exception e) {
+                    log.severe("Exception retrieving key value in namespace watch. Exception: " + e.toString());
+                    rearmNamespaceWatchLater(waitIndex);
+                }
+            });
 
-            } catch (IOException e) {
-                log.log(Level.SEVERE, "Unknown etcd exception. Message: {0}", e.getMessage());
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unknown etcd exception. Message: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Places the namespace watch again after the start retry delay, so the watch is not lost after an unexpected
+     * error and a persistent error does not cause a busy loop.
+     */
+    private void rearmNamespaceWatchLater(Long waitIndex) {
+        metrics.getRetries().inc();
+        RetryScheduler.schedule(() -> {
+            metrics.getWatchRearms().inc();
+            watchNamespace(waitIndex);
+        }, RetryScheduler.getJitteredDelay(startRetryDelay));
+    }
+
+    /**
+     * Returns whether the given etcd node key is nested under the namespace, as opposed to the namespace directory.
+     */
+    private boolean isNamespaceKey(String nodeKey) {
+        return nodeKey != null && nodeKey.startsWith("/" + namespace + "/");
+    }
+
+    /**
+     * Returns retry policy for watch requests. Exponential back-off is retained, each retry is counted in metrics.
+     */
+    private RetryPolicy getWatchRetryPolicy() {
+        return new RetryWithExponentialBackOff(startRetryDelay, -1, maxRetryDelay) {
+            @Override
+            public boolean shouldRetry(ConnectionState connectionState) {
+                boolean retry = super.shouldRetry(connectionState);
+                if (retry) {
+                    metrics.getRetries().inc();
+                }
+                return retry;
             }
+        };
+    }
+
+    private EtcdKeyGetRequest waitForChange(EtcdKeyGetRequest request, Long waitIndex) {
+        if (waitIndex != null) {
+            return request.waitForChange(waitIndex);
+        } else {
+            return request.waitForChange();
+        }
+    }
+
+    /**
+     * Returns the index, from which new watches are started. If namespace is cached, watches start right after the
+     * cached snapshot, so changes made after the snapshot was read are not missed.
+     */
+    private Long getStartWaitIndex() {
+        if (cache != null && cache.isComplete() && cacheIndex != null) {
+            return cacheIndex + 1;
+        }
+
+        return null;
+    }
+
+    /**
+     * Re-reads the given key (or the whole namespace) after the watch index was cleared from etcd event history.
+     * Changed values are stored in cache and dispatched to watched keys. Read is performed asynchronously, since it
+     * is invoked from the etcd client event loop.
+     *
+     * @param key    key in KumuluzEE format or null for the whole namespace
+     * @param resume invoked with the index, from which the watch should be resumed (null if read failed)
+     */
+    private void resync(String key, Consumer<Long> resume) {
+
+        String fullKey = (key == null) ? namespace : keyPaths.getPath(key);
+
+        try {
+            etcd.getDir(fullKey).recursive().send().addListener(promise -> {
+
+                Map<String, String> values = new HashMap<>();
+                Long index = null;
+
+                try {
+                    EtcdKeysResponse response = promise.get();
+                    collectValues(response.getNode(), values);
+                    index = response.etcdIndex;
+                } catch (EtcdException e) {
+                    if (e.isErrorCode(EtcdErrorCode.KeyNotFound)) {
+                        index = e.getIndex();
+                    } else {
+                        log.severe("etcd: " + e + " Key: " + fullKey);
+                    }
+                } catch (Exception e) {
+                    log.severe("Cannot re-read given key: " + e + " Key: " + fullKey);
+                }
+
+                if (index != null) {
+                    Collection<String> changedKeys = (cache != null) ? cache.update(key, values) : values.keySet();
+                    for (String changedKey : changedKeys) {
+                        for (String watchedKey : watchRegistry.getAffectedKeys(changedKey)) {
+                            notifyChange(watchedKey, watchedKey.equals(changedKey) ? values.get(changedKey) : null);
+                        }
+                    }
+
+                    resume.accept(index + 1);
+                } else {
+                    resume.accept(null);
+                }
+            });
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unknown etcd exception. Message: {0}", e.getMessage());
+            resume.accept(null);
+        }
+    }
+
+    /**
+     * Notifies dispatcher about a changed value. If value was deleted, value from other configuration sources is used.
+     */
+    private void notifyChange(String key, String value) {
+        updateOrdinal(key, value);
+
+        if (configurationDispatcher == null) {
+            return;
+        }
+
+        if (value != null) {
+            configurationDispatcher.notifyChange(key,
+                    ConfigurationDecoderUtils.decodeConfigValueIfEncoded(key, value));
+        } else {
+            ConfigurationUtil.getInstance().get(key)
+                    .ifPresent(fallbackConfig -> configurationDispatcher.notifyChange(key, fallbackConfig));
         }
     }
 
     @Override
     public void set(String key, String value) {
 
-        key = namespace + "/" + parseKeyNameForEtcd(key);
+        key = keyPaths.getPath(key);
 
         if (etcd != null) {
             try {
@@ -400,6 +881,45 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
         }
     }
 
+    /**
+     * Writes values by pipelining PUT requests on the etcd client: all requests are sent before waiting for any of the
+     * responses. etcd API v2 has no transactions, so the batch is not atomic; each key is reported separately.
+     */
+    @Override
+    public BatchWriteResult set(Map<String, String> values) {
+
+        if (etcd == null) {
+            return BatchWriteResult.failed(values.keySet(), "etcd client not initialized.", 0);
+        }
+
+        Map<String, EtcdResponsePromise<EtcdKeysResponse>> promises = new LinkedHashMap<>();
+        List<String> writtenKeys = new ArrayList<>();
+        Map<String, String> failedKeys = new HashMap<>();
+
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            try {
+                promises.put(entry.getKey(), etcd.put(keyPaths.getPath(entry.getKey()), entry.getValue()).send());
+            } catch (IOException e) {
+                failedKeys.put(entry.getKey(), e.toString());
+            }
+        }
+
+        for (Map.Entry<String, EtcdResponsePromise<EtcdKeysResponse>> entry : promises.entrySet()) {
+            try {
+                entry.getValue().get();
+                writtenKeys.add(entry.getKey());
+            } catch (IOException | EtcdException | EtcdAuthenticationException | TimeoutException e) {
+                failedKeys.put(entry.getKey(), e.toString());
+            }
+        }
+
+        if (!failedKeys.isEmpty()) {
+            log.severe("Cannot set " + failedKeys.size() + " of " + values.size() + " keys.");
+        }
+
+        return new BatchWriteResult(writtenKeys, failedKeys, values.size());
+    }
+
     @Override
     public void set(String key, Boolean value) {
         set(key, value.toString());
@@ -422,29 +942,81 @@ public class Etcd2ConfigurationSource implements ConfigurationSource {
 
     @Override
     public Integer getOrdinal() {
-        return getInteger(CONFIG_ORDINAL).orElse(110);
+        return ordinal;
+    }
+
+    /**
+     * Updates the cached ordinal, if the changed key is the ordinal key. Removed ordinal falls back to the default.
+     */
+    private void updateOrdinal(String key, String value) {
+        if (CONFIG_ORDINAL.equals(key)) {
+            ordinal = ParseUtils.parseOptionalStringToOptionalInteger(Optional.ofNullable(value))
+                    .orElse(DEFAULT_ORDINAL);
+        }
     }
 
-    private String parseKeyNameForEtcd(String key) {
+    /**
+     * Reads the whole namespace with a single recursive request and stores it in the cache.
+     *
+     * @return keys, which were changed or removed, or null if the namespace could not be read
+     */
+    private Set<String> preload() {
 
-        key = key.replace("[", ".[");
-        String[] splittedKey = key.split("\\.");
+        long start = System.currentTimeMillis();
 
-        StringBuilder parsedKey = new StringBuilder();
-        for (String s : splittedKey) {
-            try {
-                parsedKey.append(URLEncoder.encode(s, "UTF-8")).append("/");
-            } catch (UnsupportedEncodingException e) {
-                log.severe("UTF-8 encoding not supported.");
+        Map<String, String> values = new HashMap<>();
+
+        try {
+            EtcdKeysResponse response = hostSelector.send(client -> client.getDir(namespace).recursive());
+            collectValues(response.getNode(), values);
+            cacheIndex = response.etcdIndex;
+        } catch (EtcdException e) {
+            if (e.isErrorCode(EtcdErrorCode.KeyNotFound)) {
+                cacheIndex = e.getIndex();
+            } else {
+                log.severe("etcd: " + e + " Cannot load namespace into cache.");
+                return null;
             }
+        } catch (IOException | EtcdAuthenticationException | TimeoutException e) {
+            log.severe("Cannot load namespace into cache: " + e);
+            return null;
         }
 
-        return parsedKey.deleteCharAt(parsedKey.length() - 1).toString();
+        Set<String> changedKeys = cache.load(values);
+        if (preload) {
+            log.log(Level.INFO, "Preloaded {0} configuration values in {1} ms.",
+                    new Object[]{values.size(), System.currentTimeMillis() - start});
+        } else {
+            log.log(Level.INFO, "Loaded {0} configuration values into cache.", values.size());
+        }
 
+        return changedKeys;
     }
 
-    private String parseKeyNameFromEtcd(String key) {
-        return key.substring(this.namespace.length() + 2).replace("/", ".").replace(".[", "[");
+    private void collectValues(EtcdKeysResponse.EtcdNode node, Map<String, String> values) {
+        if (node.isDir()) {
+            if (node.getNodes() != null) {
+                for (EtcdKeysResponse.EtcdNode n : node.getNodes()) {
+                    collectValues(n, values);
+                }
+            }
+        } else if (node.getValue() != null) {
+            values.put(keyPaths.getKey(node.getKey()), node.getValue());
+        }
+    }
+
+    private void updateCache(EtcdKeysResponse response) {
+        if (cache == null || !isNamespaceKey(response.node.key)) {
+            return;
+        }
+
+        String key = keyPaths.getKey(response.node.key);
+        if (response.action == EtcdKeyAction.delete || response.action == EtcdKeyAction.expire ||
+                response.action == EtcdKeyAction.compareAndDelete) {
+            cache.remove(key);
+        } else if (!response.node.dir) {
+            cache.put(key, response.node.value);
+        }
     }
 
     public String getNamespace() {
@@ -0,0 +1,316 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.etcd;
+
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.utils.RetryScheduler;
+import mousio.client.retry.RetryNTimes;
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.EtcdSecurityContext;
+import mousio.etcd4j.requests.EtcdKeyGetRequest;
+import mousio.etcd4j.responses.EtcdAuthenticationException;
+import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeysResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes reads to the healthiest member of the etcd cluster.
+ *
+ * Each member has its own client, which sends requests to that member only. Latency of every response is tracked as
+ * an exponentially weighted moving average (EWMA) and reads go to the member with the lowest average. A read, which
+ * gets no response (I/O error or timeout), is retried once on another member. Failures are tracked as an EWMA error
+ * rate; a member is ejected once its error rate reaches 0.5 and returns after it drops below 0.25, so a single lost
+ * request does not eject a healthy member. Members are probed periodically, which keeps averages of idle members up
+ * to date and brings ejected members back once they respond again. Error responses of etcd (e.g. key not found) are
+ * regular responses and count as successful.
+ *
+ * @since 1.4.0
+ */
+class EtcdHostSelector {
+
+    private static final Logger log = Logger.getLogger(EtcdHostSelector.class.getName());
+
+    // weight of the newest latency sample in the moving average
+    private static final double EWMA_WEIGHT = 0.3;
+    // error rates at which a member is ejected and brought back, the gap prevents flapping
+    private static final double EJECT_ERROR_RATE = 0.5;
+    private static final double RECOVER_ERROR_RATE = 0.25;
+
+    private final List<Member> members;
+    private final ConfigMetrics metrics;
+    private ScheduledFuture<?> probing;
+
+    /**
+     * @param etcd            client of the whole cluster, used as is if there is a single host
+     * @param hosts           etcd hosts
+     * @param securityContext security context of the clients, may be null
+     * @param metrics         metrics of the configuration source, retries on other members are counted there
+     */
+    EtcdHostSelector(EtcdClient etcd, URI[] hosts, EtcdSecurityContext securityContext, ConfigMetrics metrics) {
+
+        this.metrics = metrics;
+
+        if (hosts.length == 1) {
+            members = Collections.singletonList(new Member(hosts[0], etcd));
+        } else {
+            List<Member> clients = new ArrayList<>(hosts.length);
+            for (URI host : hosts) {
+                EtcdClient client = new EtcdClient((securityContext != null) ? securityContext :
+                        EtcdSecurityContext.NONE, host);
+                // failed requests are retried on another member instead
+                client.setRetryHandler(new RetryNTimes(0, 0));
+                clients.add(new Member(host, client));
+            }
+            members = Collections.unmodifiableList(clients);
+        }
+    }
+
+    /**
+     * Starts periodic probing of members. Probing is not needed with a single host. Probes are sent asynchronously,
+     * so the scheduler thread does not wait for members, which do not respond.
+     *
+     * @param probeKey        full key read by probes
+     * @param probeIntervalMs interval between probes in ms
+     */
+    synchronized void startProbing(String probeKey, long probeIntervalMs) {
+        if (members.size() > 1 && probeIntervalMs > 0 && probing == null) {
+            probing = RetryScheduler.getScheduler().scheduleWithFixedDelay(
+                    () -> members.forEach(m -> probe(m, probeKey)),
+                    probeIntervalMs, probeIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops probing and closes clients of the members. The client of the whole cluster, which is used with a single
+     * host, is left open.
+     */
+    synchronized void close() {
+
+        if (probing != null) {
+            probing.cancel(false);
+            probing = null;
+        }
+
+        if (members.size() > 1) {
+            for (Member member : members) {
+                try {
+                    member.client.close();
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Error closing client of etcd host {0}: {1}",
+                            new Object[]{member.host, e.getMessage()});
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the request to the healthiest member and waits for the response. If the member does not respond, the
+     * request is sent once more to the next healthiest member.
+     *
+     * @param request creates the request on the given client
+     * @return response of etcd
+     */
+    EtcdKeysResponse send(Function<EtcdClient, EtcdKeyGetRequest> request)
+            throws IOException, EtcdException, EtcdAuthenticationException, TimeoutException {
+
+        Member member = select(null);
+
+        try {
+            return send(member, request);
+        } catch (IOException | TimeoutException e) {
+            Member next = select(member);
+            if (next == member) {
+                throw e;
+            }
+
+            log.log(Level.FINE, "etcd host {0} did not respond, retrying on {1}.",
+                    new Object[]{member.host, next.host});
+            metrics.getRetries().inc();
+
+            return send(next, request);
+        }
+    }
+
+    private EtcdKeysResponse send(Member member, Function<EtcdClient, EtcdKeyGetRequest> request)
+            throws IOException, EtcdException, EtcdAuthenticationException, TimeoutException {
+
+        long start = System.nanoTime();
+
+        try {
+            EtcdKeysResponse response = request.apply(member.client).send().get();
+            member.responded(System.nanoTime() - start);
+            return response;
+        } catch (EtcdException | EtcdAuthenticationException e) {
+            member.responded(System.nanoTime() - start);
+            throw e;
+        } catch (IOException | TimeoutException e) {
+            member.failed();
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #send(Function)}.
+     *
+     * @param request creates the request on the given client
+     * @return future, completed with the response or exceptionally with the exception of the request
+     */
+    CompletableFuture<EtcdKeysResponse> sendAsync(Function<EtcdClient, EtcdKeyGetRequest> request) {
+
+        CompletableFuture<EtcdKeysResponse> future = new CompletableFuture<>();
+        Member member = select(null);
+
+        sendAsync(member, request, future, e -> {
+            Member next = select(member);
+            if (next == member) {
+                future.completeExceptionally(e);
+            } else {
+                log.log(Level.FINE, "etcd host {0} did not respond, retrying on {1}.",
+                        new Object[]{member.host, next.host});
+                metrics.getRetries().inc();
+                sendAsync(next, request, future, future::completeExceptionally);
+            }
+        });
+
+        return future;
+    }
+
+    private void sendAsync(Member member, Function<EtcdClient, EtcdKeyGetRequest> request,
+                           CompletableFuture<EtcdKeysResponse> future,
+                           Consumer<Exception> onFailure) {
+
+        long start = System.nanoTime();
+
+        try {
+            request.apply(member.client).send().addListener(promise -> {
+                try {
+                    EtcdKeysResponse response = promise.get();
+                    member.responded(System.nanoTime() - start);
+                    future.complete(response);
+                } catch (EtcdException | EtcdAuthenticationException e) {
+                    member.responded(System.nanoTime() - start);
+                    future.completeExceptionally(e);
+                } catch (Exception e) {
+                    member.failed();
+                    onFailure.accept(e);
+                }
+            });
+        } catch (IOException e) {
+            member.failed();
+            onFailure.accept(e);
+        }
+    }
+
+    private void probe(Member member, String probeKey) {
+        sendAsync(member, client -> client.get(probeKey), new CompletableFuture<>(),
+                e -> log.log(Level.FINE, "Probe of etcd host {0} failed: {1}", new Object[]{member.host, e}));
+    }
+
+    /**
+     * Returns the available member with the lowest average latency. If all members are ejected, the one ejected
+     * first is returned.
+     *
+     * @param excluded member, which should not be returned if there is another one, may be null
+     */
+    private Member select(Member excluded) {
+
+        Member selected = null;
+        Member firstEjected = null;
+
+        for (Member member : members) {
+            if (member == excluded) {
+                continue;
+            }
+
+            if (!member.ejected) {
+                if (selected == null || member.latencyNanos < selected.latencyNanos) {
+                    selected = member;
+                }
+            } else if (firstEjected == null || member.ejectedAt - firstEjected.ejectedAt < 0) {
+                firstEjected = member;
+            }
+        }
+
+        if (selected != null) {
+            return selected;
+        }
+
+        return (firstEjected != null) ? firstEjected : excluded;
+    }
+
+    private static class Member {
+
+        private final URI host;
+        private final EtcdClient client;
+
+        // average latency, zero until the first response, so members without responses are tried first
+        private volatile double latencyNanos;
+        // average share of requests without a response
+        private double errorRate;
+        private volatile boolean ejected;
+        private volatile long ejectedAt;
+
+        private Member(URI host, EtcdClient client) {
+            this.host = host;
+            this.client = client;
+        }
+
+        private synchronized void responded(long latencyNanos) {
+            if (this.latencyNanos == 0) {
+                this.latencyNanos = latencyNanos;
+            } else {
+                this.latencyNanos += EWMA_WEIGHT * (latencyNanos - this.latencyNanos);
+            }
+
+            errorRate -= EWMA_WEIGHT * errorRate;
+
+            if (ejected && errorRate < RECOVER_ERROR_RATE) {
+                log.log(Level.INFO, "etcd host {0} is responding again.", host);
+                ejected = false;
+            }
+        }
+
+        private synchronized void failed() {
+
+            errorRate += EWMA_WEIGHT * (1 - errorRate);
+
+            if (!ejected && errorRate >= EJECT_ERROR_RATE) {
+                log.log(Level.WARNING, "etcd host {0} is not responding, routing reads to other hosts.", host);
+                ejected = true;
+                ejectedAt = System.nanoTime();
+            }
+        }
+    }
+}
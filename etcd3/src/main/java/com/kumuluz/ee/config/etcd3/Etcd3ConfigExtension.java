@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.config.etcd3;
+
+import com.kumuluz.ee.common.ConfigExtension;
+import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.common.dependencies.EeExtensionDef;
+import com.kumuluz.ee.common.dependencies.EeExtensionGroup;
+import com.kumuluz.ee.common.wrapper.KumuluzServerWrapper;
+import com.kumuluz.ee.configuration.ConfigurationSource;
+
+import java.util.logging.Logger;
+
+/**
+ * KumuluzEE framework extension for adding etcd API v3 configuration source in configuration util.
+ *
+ * @since 1.4.0
+ */
+@EeExtensionDef(name = "etcd3", group = EeExtensionGroup.CONFIG)
+public class Etcd3ConfigExtension implements ConfigExtension {
+
+    private static final Logger log = Logger.getLogger(Etcd3ConfigExtension.class.getName());
+
+    private ConfigurationSource configurationSource;
+
+    @Override
+    public void init(KumuluzServerWrapper kumuluzServerWrapper, EeConfig eeConfig) {
+        log.info("Initializing etcd3 configuration source.");
+        configurationSource = new Etcd3ConfigurationSource(eeConfig);
+    }
+
+    @Override
+    public void load() {
+        // this extension does not perform any action on load
+    }
+
+    @Override
+    public ConfigurationSource getConfigurationSource() {
+        return configurationSource;
+    }
+}
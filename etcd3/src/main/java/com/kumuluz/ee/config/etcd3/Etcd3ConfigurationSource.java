@@ -0,0 +1,809 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.etcd3;
+
+import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.AsyncConfigurationSource;
+import com.kumuluz.ee.config.cache.ConfigurationCache;
+import com.kumuluz.ee.config.cache.SnapshotFile;
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.metrics.ConfigMetricsRegistry;
+import com.kumuluz.ee.config.utils.InitializationUtils;
+import com.kumuluz.ee.config.utils.KeyPathCache;
+import com.kumuluz.ee.config.utils.KeyUtils;
+import com.kumuluz.ee.config.utils.ListIndexes;
+import com.kumuluz.ee.config.utils.ParseUtils;
+import com.kumuluz.ee.config.utils.RetryScheduler;
+import com.kumuluz.ee.config.utils.SingleFlight;
+import com.kumuluz.ee.config.watch.CoalescingConfigurationDispatcher;
+import com.kumuluz.ee.config.watch.WatchRegistry;
+import com.kumuluz.ee.configuration.utils.ConfigurationDecoderUtils;
+import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.ClientBuilder;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Util class for getting and setting configuration properties for etcd API v3.
+ *
+ * All requests and watch streams share a single gRPC channel (one HTTP/2 connection per etcd host).
+ *
+ * @since 1.4.0
+ */
+public class Etcd3ConfigurationSource implements AsyncConfigurationSource {
+
+    private static final Logger log = Logger.getLogger(Etcd3ConfigurationSource.class.getName());
+
+    private static final int DEFAULT_ORDINAL = 110;
+
+    // Timeout for unary requests (range, put). Watch streams are long-lived and not affected by this timeout.
+    private static final int REQUEST_TIMEOUT_SECONDS = 10;
+
+    private Client etcd;
+    private KV kvClient;
+    private ConfigurationDispatcher configurationDispatcher;
+    private String namespace;
+    private KeyPathCache keyPaths;
+    private volatile int ordinal = DEFAULT_ORDINAL;
+    private int startRetryDelay;
+    private int maxRetryDelay;
+    private ConfigurationCache cache;
+    private boolean preload;
+    private final SingleFlight<String, Optional<String>> reads = new SingleFlight<>();
+    private final ConfigMetrics metrics = ConfigMetricsRegistry.getMetrics("etcd3");
+    private volatile long cacheRevision;
+    private WatchRegistry watchRegistry = new WatchRegistry();
+    private boolean namespaceWatch;
+    private final AtomicBoolean namespaceWatchStarted = new AtomicBoolean(false);
+    private final AtomicInteger activeWatches = new AtomicInteger();
+    private final Set<Watch.Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private EeConfig eeConfig;
+
+    public Etcd3ConfigurationSource(EeConfig eeConfig) {
+        this.eeConfig = eeConfig;
+    }
+
+    @Override
+    public void init(ConfigurationDispatcher configurationDispatcher) {
+
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+        this.configurationDispatcher = CoalescingConfigurationDispatcher.wrap(configurationDispatcher,
+                InitializationUtils.getDispatchWindowMs(configurationUtil, "etcd3"), metrics);
+        // get namespace
+        this.namespace = InitializationUtils.getNamespace(eeConfig, configurationUtil, "etcd3");
+        this.keyPaths = KeyPathCache.forEtcd3(this.namespace);
+        log.log(Level.INFO, "Using namespace: {0}", this.namespace);
+
+        // get etcd host names
+        String etcdUrls = configurationUtil.get("kumuluzee.config.etcd3.hosts").orElse(null);
+        if (etcdUrls == null || etcdUrls.isEmpty()) {
+            log.severe("No etcd server hosts provided. Specify hosts with configuration key" +
+                    "kumuluzee.config.etcd3.hosts in format " +
+                    "http://192.168.99.100:2379,http://192.168.99.101:2379,http://192.168.99.102:2379");
+            return;
+        }
+
+        String[] etcdHosts = etcdUrls.split(",");
+        if (etcdHosts.length % 2 == 0) {
+            log.warning("Using an odd number of etcd hosts is recommended. See etcd documentation.");
+        }
+
+        // get retry delays
+        startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "etcd3");
+        maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "etcd3");
+
+        ClientBuilder clientBuilder = Client.builder()
+                .endpoints(etcdHosts)
+                .retryChronoUnit(ChronoUnit.MILLIS)
+                .retryDelay(startRetryDelay)
+                .retryMaxDelay(maxRetryDelay);
+
+        // get user credentials
+        String etcdUsername = configurationUtil.get("kumuluzee.config.etcd3.username").orElse(null);
+        String etcdPassword = configurationUtil.get("kumuluzee.config.etcd3.password").orElse(null);
+        if (etcdUsername != null && !etcdUsername.isEmpty() && etcdPassword != null && !etcdPassword.isEmpty()) {
+            clientBuilder.user(toByteSequence(etcdUsername)).password(toByteSequence(etcdPassword));
+        }
+
+        // get CA certificate
+        String cert = configurationUtil.get("kumuluzee.config.etcd3.ca").orElse(null);
+        if (cert != null) {
+
+            cert = cert.replaceAll("\\s+", "").replace("-----BEGINCERTIFICATE-----", "")
+                    .replace("-----ENDCERTIFICATE-----", "");
+
+            byte[] decoded = Base64.getDecoder().decode(cert);
+
+            try {
+                X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(decoded));
+
+                clientBuilder.sslContext(sslContextBuilder -> sslContextBuilder.trustManager(certificate));
+
+            } catch (CertificateException e) {
+                log.severe("Certificate exception: " + e.toString());
+            } catch (SSLException e) {
+                log.severe("SSL exception: " + e.toString());
+            }
+        }
+
+        etcd = clientBuilder.build();
+        kvClient = etcd.getKVClient();
+
+        preload = InitializationUtils.isPreloadEnabled(configurationUtil, "etcd3");
+        boolean cacheLazy = InitializationUtils.isCacheLazy(configurationUtil, "etcd3");
+        Optional<Path> snapshotPath = InitializationUtils.getSnapshotFile(configurationUtil, "etcd3", namespace);
+        SnapshotFile snapshot = null;
+        boolean restored = false;
+        if (preload || snapshotPath.isPresent() || InitializationUtils.isCacheEnabled(configurationUtil, "etcd3")) {
+            cache = new ConfigurationCache(metrics);
+            cache.setExpiration(InitializationUtils.getCacheTtlPolicy(configurationUtil, "etcd3"), this::readAsync);
+            if (snapshotPath.isPresent()) {
+                snapshot = new SnapshotFile(snapshotPath.get(), namespace, cache);
+                restored = snapshot.restore();
+                snapshot.persist();
+            }
+            if (!restored && (preload || snapshot != null || !cacheLazy)) {
+                preload();
+            }
+        }
+
+        namespaceWatch = InitializationUtils.isNamespaceWatchEnabled(configurationUtil, "etcd3");
+
+        // resolve ordinal once, the watch keeps it up to date
+        ordinal = getInteger(CONFIG_ORDINAL).orElse(DEFAULT_ORDINAL);
+        watch(CONFIG_ORDINAL);
+
+        if (snapshot != null && !cache.isComplete()) {
+            // snapshot is written only after the whole namespace was read, keep reading it in background
+            snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+        }
+
+        if (restored) {
+            // serve values from the snapshot, reconcile with etcd in background
+            snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+            log.info("etcd3 configuration source initialized from snapshot, reconciling with etcd in background.");
+        } else {
+            log.info("etcd3 configuration source successfully initialized.");
+        }
+    }
+
+    /**
+     * Closes the watches and the client. Pending re-reads of compacted watches are abandoned.
+     */
+    public void close() {
+
+        closed = true;
+
+        watchers.forEach(Watch.Watcher::close);
+        watchers.clear();
+
+        for (int i = activeWatches.getAndSet(0); i > 0; i--) {
+            metrics.getActiveWatches().dec();
+        }
+
+        if (etcd != null) {
+            etcd.close();
+        }
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+
+        if (cache != null) {
+            return cache.get(key, this::load);
+        }
+
+        return load(key);
+    }
+
+    /**
+     * Returns parsed value of the given key. With caching enabled, the parsed value is cached alongside the raw value.
+     */
+    private <T> Optional<T> getParsed(String key, Class<T> type, Function<Optional<String>, Optional<T>> parser) {
+
+        if (cache != null) {
+            return cache.get(key, this::load, type, parser);
+        }
+
+        return parser.apply(get(key));
+    }
+
+    /**
+     * Reads the value from etcd. Concurrent reads of the same key share a single request.
+     */
+    private Optional<String> load(String key) {
+        return reads.execute(key, k -> metrics.timeRead(() -> getFromEtcd(k)));
+    }
+
+    private Optional<String> getFromEtcd(String key) {
+
+        String fullKey = keyPaths.getPath(key);
+
+        if (kvClient != null) {
+            return toValue(await(kvClient.get(toByteSequence(fullKey)), fullKey));
+        }
+
+        return Optional.empty();
+    }
+
+    private static Optional<String> toValue(GetResponse response) {
+
+        if (response != null && !response.getKvs().isEmpty()) {
+            return Optional.of(response.getKvs().get(0).getValue().toString(StandardCharsets.UTF_8));
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Boolean> getBoolean(String key) {
+        return getParsed(key, Boolean.class, ParseUtils::parseOptionalStringToOptionalBoolean);
+    }
+
+    @Override
+    public Optional<Integer> getInteger(String key) {
+        return getParsed(key, Integer.class, ParseUtils::parseOptionalStringToOptionalInteger);
+    }
+
+    @Override
+    public Optional<Long> getLong(String key) {
+        return getParsed(key, Long.class, ParseUtils::parseOptionalStringToOptionalLong);
+    }
+
+    @Override
+    public Optional<Double> getDouble(String key) {
+        return getParsed(key, Double.class, ParseUtils::parseOptionalStringToOptionalDouble);
+    }
+
+    @Override
+    public Optional<Float> getFloat(String key) {
+        return getParsed(key, Float.class, ParseUtils::parseOptionalStringToOptionalFloat);
+    }
+
+    /**
+     * Map keys and list sizes are answered from the index of cached keys only while the namespace watch keeps the
+     * whole cached namespace up to date, otherwise keys added on the server would be missing from the index.
+     */
+    private boolean isKeyIndexCurrent() {
+        return cache != null && cache.isComplete() && namespaceWatchStarted.get();
+    }
+
+    @Override
+    public Optional<Integer> getListSize(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return listSize;
+            }
+        }
+
+        return toListSize(getChildren(key));
+    }
+
+    private static Optional<Integer> toListSize(Set<String> children) {
+        return ListIndexes.getListSize(children, 0);
+    }
+
+    @Override
+    public Optional<List<String>> getMapKeys(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return mapKeys;
+            }
+        }
+
+        return toMapKeys(getChildren(key));
+    }
+
+    private static Optional<List<String>> toMapKeys(Set<String> mapKeys) {
+
+        if (mapKeys.isEmpty()) {
+            return Optional.empty();
+        } else {
+            return Optional.of(new ArrayList<>(mapKeys));
+        }
+    }
+
+    /**
+     * Returns names of direct children of the given key. Uses a keys-only prefix range request, so values are not
+     * transferred.
+     */
+    private Set<String> getChildren(String key) {
+
+        if (kvClient != null) {
+            String prefix = keyPaths.getPath(key) + "/";
+
+            return toChildren(prefix, await(getChildKeys(prefix), prefix));
+        }
+
+        return Collections.emptySet();
+    }
+
+    private CompletableFuture<GetResponse> getChildKeys(String prefix) {
+        return kvClient.get(toByteSequence(prefix),
+                GetOption.newBuilder().isPrefix(true).withKeysOnly(true).build());
+    }
+
+    private static Set<String> toChildren(String prefix, GetResponse response) {
+
+        Set<String> children = new HashSet<>();
+
+        if (response != null) {
+            for (KeyValue kv : response.getKvs()) {
+                String childKey = kv.getKey().toString(StandardCharsets.UTF_8).substring(prefix.length());
+                int separator = childKey.indexOf('/');
+                children.add(separator < 0 ? childKey : childKey.substring(0, separator));
+            }
+        }
+
+        return children;
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAsync(String key) {
+
+        if (cache != null) {
+            return cache.getAsync(key, this::loadAsync);
+        }
+
+        return loadAsync(key);
+    }
+
+    private CompletableFuture<Optional<String>> loadAsync(String key) {
+        // errors are logged and reported as absent values
+        return readAsync(key).exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Reads the value from etcd. Concurrent reads of the same key share a single request. Unlike
+     * {@link #loadAsync(String)}, the returned future is completed exceptionally if the value could not be read, so
+     * a failed refresh of an expired value keeps the cached value.
+     */
+    private CompletableFuture<Optional<String>> readAsync(String key) {
+        return reads.executeAsync(key, k -> metrics.timeReadAsync(() -> getFromEtcdAsync(k)));
+    }
+
+    private CompletableFuture<Optional<String>> getFromEtcdAsync(String key) {
+
+        if (kvClient == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String fullKey = keyPaths.getPath(key);
+
+        return kvClient.get(toByteSequence(fullKey)).whenComplete((response, e) -> {
+            if (e != null) {
+                log.severe("etcd exception: " + e + " Key: " + fullKey);
+            }
+        }).thenApply(Etcd3ConfigurationSource::toValue);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Integer>> getListSizeAsync(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return CompletableFuture.completedFuture(listSize);
+            }
+        }
+
+        return getChildrenAsync(key).thenApply(Etcd3ConfigurationSource::toListSize);
+    }
+
+    @Override
+    public CompletableFuture<Optional<List<String>>> getMapKeysAsync(String key) {
+
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return CompletableFuture.completedFuture(mapKeys);
+            }
+        }
+
+        return getChildrenAsync(key).thenApply(Etcd3ConfigurationSource::toMapKeys);
+    }
+
+    private CompletableFuture<Set<String>> getChildrenAsync(String key) {
+
+        if (kvClient == null) {
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+
+        String prefix = keyPaths.getPath(key) + "/";
+
+        return recover(getChildKeys(prefix), prefix).thenApply(response -> toChildren(prefix, response));
+    }
+
+    @Override
+    public void watch(String key) {
+
+        String fullKey = keyPaths.getPath(key);
+
+        if (etcd != null) {
+            boolean registered = watchRegistry.register(key);
+
+            if (namespaceWatch) {
+                if (registered) {
+                    log.log(Level.INFO, "Registering key {0} with namespace watch.", fullKey);
+                }
+                if (namespaceWatchStarted.compareAndSet(false, true)) {
+                    log.log(Level.INFO, "Initializing watch for namespace: {0}", namespace);
+                    watchStarted();
+                    watchPrefix(null, getStartRevision());
+                }
+            } else if (registered) {
+                log.log(Level.INFO, "Initializing watch for key: {0}", fullKey);
+                watchStarted();
+                watchPrefix(key, getStartRevision());
+            }
+        }
+    }
+
+    private void watchStarted() {
+        activeWatches.incrementAndGet();
+        metrics.getActiveWatches().inc();
+    }
+
+    private void watchEnded() {
+        if (activeWatches.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+            metrics.getActiveWatches().dec();
+        }
+    }
+
+    /**
+     * Opens a watch stream on the given key and its nested keys or on the whole namespace. All watch streams are
+     * multiplexed over the client's gRPC channel.
+     *
+     * @param key      key in KumuluzEE format or null for the whole namespace
+     * @param revision revision to start watching from, 0 to watch from the current revision
+     */
+    private void watchPrefix(String key, long revision) {
+
+        if (closed) {
+            return;
+        }
+
+        String prefix = getPrefix(key);
+
+        WatchOption.Builder watchOption = WatchOption.newBuilder().isPrefix(true);
+        if (revision > 0) {
+            watchOption.withRevision(revision);
+        }
+
+        AtomicReference<Watch.Watcher> watcher = new AtomicReference<>();
+        Watch.Listener listener = Watch.listener(response -> {
+            for (WatchEvent event : response.getEvents()) {
+                String changedKey = keyPaths.getKey(event.getKeyValue().getKey().toString(StandardCharsets.UTF_8));
+
+                // prefix also matches sibling keys with the same beginning (e.g. key and key2)
+                if (key != null && !key.equals(changedKey) && !KeyUtils.isNested(key, changedKey)) {
+                    continue;
+                }
+
+                String newValue = (event.getEventType() == WatchEvent.EventType.DELETE) ? null :
+                        event.getKeyValue().getValue().toString(StandardCharsets.UTF_8);
+
+                if (cache != null) {
+                    cache.put(changedKey, newValue);
+                }
+
+                if (key == null) {
+                    for (String watchedKey : watchRegistry.getAffectedKeys(changedKey)) {
+                        String value = watchedKey.equals(changedKey) ? newValue : null;
+                        log.log(Level.INFO, "Value changed. Key: {0} New value: {1}",
+                                new String[]{watchedKey, value});
+                        notifyChange(watchedKey, value);
+                    }
+                } else {
+                    log.log(Level.INFO, "Value changed. Key: {0} New value: {1}",
+                            new String[]{changedKey, newValue});
+                    notifyChange(changedKey, newValue);
+                }
+            }
+        }, throwable -> {
+            if (closed) {
+                return;
+            }
+            if (throwable instanceof CompactedException) {
+                // watch revision was compacted, re-read values and resume from the revision of the read
+                log.log(Level.WARNING, "Watch revision for {0} compacted, re-reading values.", prefix);
+                Watch.Watcher canceled = watcher.get();
+                if (canceled != null && watchers.remove(canceled)) {
+                    canceled.close();
+                }
+                resync(key, startRetryDelay);
+            } else {
+                log.severe("Exception in watch stream. Exception: " + throwable.toString());
+                watchEnded();
+            }
+        });
+
+        watcher.set(etcd.getWatchClient().watch(toByteSequence(prefix), watchOption.build(), listener));
+        watchers.add(watcher.get());
+    }
+
+    /**
+     * Returns the revision, from which new watches are started. If namespace is cached, watches start right after
+     * the cached snapshot, so changes made after the snapshot was read are not missed.
+     */
+    private long getStartRevision() {
+        if (cache != null && cache.isComplete() && cacheRevision > 0) {
+            return cacheRevision + 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Re-reads the given key (or the whole namespace) after the watch revision was compacted. Changed values are
+     * stored in cache and dispatched to watched keys, then the watch is resumed from the revision of the read. The
+     * read is asynchronous, since it is invoked from the watch callback, and is retried with exponential backoff until
+     * it succeeds, so changes made in the meantime are not lost.
+     *
+     * @param key        key in KumuluzEE format or null for the whole namespace
+     * @param retryDelay delay of the next retry in ms
+     */
+    private void resync(String key, int retryDelay) {
+
+        if (closed) {
+            return;
+        }
+
+        String prefix = getPrefix(key);
+
+        getValues(prefix).whenComplete((response, throwable) -> {
+
+            if (throwable != null) {
+                log.log(Level.WARNING, "Cannot re-read values of {0}, retrying in {1} ms. Exception: {2}",
+                        new Object[]{prefix, retryDelay, throwable});
+                metrics.getRetries().inc();
+                RetryScheduler.schedule(() -> resync(key, RetryScheduler.getNextDelay(retryDelay, maxRetryDelay)),
+                        RetryScheduler.getJitteredDelay(retryDelay));
+                return;
+            }
+
+            Map<String, String> values = new HashMap<>();
+            collectValues(key, response, values);
+
+            Collection<String> changedKeys = (cache != null) ? cache.update(key, values) : values.keySet();
+            for (String changedKey : changedKeys) {
+                for (String watchedKey : watchRegistry.getAffectedKeys(changedKey)) {
+                    notifyChange(watchedKey, watchedKey.equals(changedKey) ? values.get(changedKey) : null);
+                }
+            }
+
+            metrics.getWatchRearms().inc();
+            watchPrefix(key, response.getHeader().getRevision() + 1);
+        });
+    }
+
+    /**
+     * Reads values of the given key and its nested keys (or the whole namespace) with a single prefix range request.
+     *
+     * @param key    key in KumuluzEE format or null for the whole namespace
+     * @param values map, to which the values are stored
+     * @return revision of the read, 0 if read failed
+     */
+    private long readValues(String key, Map<String, String> values) {
+
+        String prefix = getPrefix(key);
+
+        GetResponse response = await(getValues(prefix), prefix);
+
+        if (response == null) {
+            return 0;
+        }
+
+        collectValues(key, response, values);
+
+        return response.getHeader().getRevision();
+    }
+
+    private String getPrefix(String key) {
+        return (key == null) ? namespace + "/" : keyPaths.getPath(key);
+    }
+
+    private CompletableFuture<GetResponse> getValues(String prefix) {
+        return kvClient.get(toByteSequence(prefix), GetOption.newBuilder().isPrefix(true).build());
+    }
+
+    /**
+     * Stores values of the given key and its nested keys from the prefix range response.
+     */
+    private void collectValues(String key, GetResponse response, Map<String, String> values) {
+
+        for (KeyValue kv : response.getKvs()) {
+            String valueKey = keyPaths.getKey(kv.getKey().toString(StandardCharsets.UTF_8));
+            if (key == null || key.equals(valueKey) || KeyUtils.isNested(key, valueKey)) {
+                values.put(valueKey, kv.getValue().toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads the whole namespace with a single prefix range request and stores it in the cache.
+     *
+     * @return keys, which were changed or removed, or null if the namespace could not be read
+     */
+    private Set<String> preload() {
+
+        long start = System.currentTimeMillis();
+
+        Map<String, String> values = new HashMap<>();
+        long revision = readValues(null, values);
+
+        if (revision > 0) {
+            cacheRevision = revision;
+            Set<String> changedKeys = cache.load(values);
+            if (preload) {
+                log.log(Level.INFO, "Preloaded {0} configuration values in {1} ms.",
+                        new Object[]{values.size(), System.currentTimeMillis() - start});
+            } else {
+                log.log(Level.INFO, "Loaded {0} configuration values into cache.", values.size());
+            }
+            return changedKeys;
+        }
+
+        return null;
+    }
+
+    /**
+     * Notifies dispatcher about a changed value. If value was deleted, value from other configuration sources is used.
+     */
+    private void notifyChange(String key, String value) {
+        updateOrdinal(key, value);
+
+        if (configurationDispatcher == null) {
+            return;
+        }
+
+        if (value != null) {
+            configurationDispatcher.notifyChange(key,
+                    ConfigurationDecoderUtils.decodeConfigValueIfEncoded(key, value));
+        } else {
+            ConfigurationUtil.getInstance().get(key)
+                    .ifPresent(fallbackConfig -> configurationDispatcher.notifyChange(key, fallbackConfig));
+        }
+    }
+
+    @Override
+    public void set(String key, String value) {
+
+        String fullKey = keyPaths.getPath(key);
+
+        if (kvClient != null) {
+            if (await(kvClient.put(toByteSequence(fullKey), toByteSequence(value)), fullKey) == null) {
+                log.severe("Error: value was not set.");
+            }
+        }
+    }
+
+    @Override
+    public void set(String key, Boolean value) {
+        set(key, value.toString());
+    }
+
+    @Override
+    public void set(String key, Integer value) {
+        set(key, value.toString());
+    }
+
+    @Override
+    public void set(String key, Double value) {
+        set(key, value.toString());
+    }
+
+    @Override
+    public void set(String key, Float value) {
+        set(key, value.toString());
+    }
+
+    @Override
+    public Integer getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Updates the cached ordinal, if the changed key is the ordinal key. Removed ordinal falls back to the default.
+     */
+    private void updateOrdinal(String key, String value) {
+        if (CONFIG_ORDINAL.equals(key)) {
+            ordinal = ParseUtils.parseOptionalStringToOptionalInteger(Optional.ofNullable(value))
+                    .orElse(DEFAULT_ORDINAL);
+        }
+    }
+
+    /**
+     * Logs failure of the given request and completes the returned future with null instead.
+     */
+    private <T> CompletableFuture<T> recover(CompletableFuture<T> future, String fullKey) {
+        return future.exceptionally(e -> {
+            log.severe("etcd exception: " + e + " Key: " + fullKey);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the etcd request to complete.
+     *
+     * @return response or null if request failed
+     */
+    private <T> T await(CompletableFuture<T> future, String fullKey) {
+        try {
+            return future.get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.severe("Interrupted while accessing key: " + fullKey);
+        } catch (ExecutionException e) {
+            log.severe("etcd exception: " + e.getCause() + " Key: " + fullKey);
+        } catch (TimeoutException e) {
+            log.severe("Timeout exception. Cannot access given key: " + e + " Key: " + fullKey);
+        }
+
+        return null;
+    }
+
+    private static ByteSequence toByteSequence(String value) {
+        return ByteSequence.from(value, StandardCharsets.UTF_8);
+    }
+
+    public String getNamespace() {
+        return this.namespace;
+    }
+}
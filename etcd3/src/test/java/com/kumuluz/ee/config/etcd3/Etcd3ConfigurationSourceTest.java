@@ -0,0 +1,274 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.etcd3;
+
+import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.metrics.ConfigMetricsRegistry;
+import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
+import com.kumuluz.ee.configuration.utils.ConfigurationImpl;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the etcd API v3 configuration source against an in-process stand-in of the etcd KV and Watch services.
+ */
+public class Etcd3ConfigurationSourceTest {
+
+    private static final String NAMESPACE = "test";
+    private static final String STRING_KEY = "rest-config.string-property";
+    private static final String LIST_KEY = "rest-config.list";
+    private static final String MAP_KEY = "rest-config.map";
+    private static final String MISSING_KEY = "rest-config.missing-property";
+
+    private static final List<String> PROPERTIES = Arrays.asList("kumuluzee.config.etcd3.hosts",
+            "kumuluzee.config.etcd3.preload", "kumuluzee.config.etcd3.namespace-watch",
+            "kumuluzee.config.etcd3.start-retry-delay-ms");
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private Etcd3StandIn standIn;
+    private Etcd3ConfigurationSource source;
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+    private final ConfigMetrics metrics = ConfigMetricsRegistry.getMetrics("etcd3");
+
+    @BeforeClass
+    public static void initializeConfiguration() {
+        System.setProperty("kumuluzee.config.namespace", NAMESPACE);
+        ConfigurationUtil.initialize(new ConfigurationImpl());
+    }
+
+    @Before
+    public void startStandIn() throws IOException {
+
+        standIn = new Etcd3StandIn();
+        standIn.start();
+
+        standIn.put("test/rest-config/string-property", "Monday");
+        for (int i = 0; i < 3; i++) {
+            standIn.put("test/rest-config/list/[" + i + "]", "item" + i);
+        }
+        standIn.put("test/rest-config/map/first", "1");
+        standIn.put("test/rest-config/map/second", "2");
+        standIn.put("test/rest-config/map/nested/value", "3");
+
+        System.setProperty("kumuluzee.config.etcd3.hosts", standIn.getUrl());
+        System.setProperty("kumuluzee.config.etcd3.start-retry-delay-ms", "50");
+    }
+
+    @After
+    public void stopStandIn() {
+        if (source != null) {
+            source.close();
+        }
+        standIn.stop();
+        PROPERTIES.forEach(System::clearProperty);
+    }
+
+    @Test
+    public void preloadReadsNamespaceWithSingleRequest() {
+
+        System.setProperty("kumuluzee.config.etcd3.preload", "true");
+        Etcd3ConfigurationSource source = initSource();
+
+        assertEquals(1, standIn.getRangeRequests());
+
+        assertEquals(Optional.of("Monday"), source.get(STRING_KEY));
+        assertEquals(Optional.of("item2"), source.get(LIST_KEY + "[2]"));
+        assertEquals(Optional.empty(), source.get(MISSING_KEY));
+        assertEquals(1, standIn.getRangeRequests());
+    }
+
+    @Test
+    public void watchNotifiesChangedValue() throws InterruptedException {
+
+        Etcd3ConfigurationSource source = initSource();
+        source.watch(STRING_KEY);
+        awaitWatches(2);
+
+        standIn.put("test/rest-config/string-property", "Tuesday");
+        // sibling key with the same beginning is not reported
+        standIn.put("test/rest-config/string-property2", "Other");
+        standIn.put("test/rest-config/string-property", "Wednesday");
+
+        assertEquals(STRING_KEY + "=Tuesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(STRING_KEY + "=Wednesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Optional.of("Wednesday"), source.get(STRING_KEY));
+    }
+
+    @Test
+    public void compactedWatchIsResyncedFromReadRevision() throws InterruptedException {
+
+        System.setProperty("kumuluzee.config.etcd3.preload", "true");
+        Etcd3ConfigurationSource source = initSource();
+        source.watch(STRING_KEY);
+        awaitWatches(2);
+        long rearms = metrics.getWatchRearms().getCount();
+
+        // change is held back from the watch and compacted away, only the re-read can find it
+        standIn.pauseWatches();
+        standIn.put("test/rest-config/string-property", "Tuesday");
+        standIn.compact();
+
+        assertEquals(STRING_KEY + "=Tuesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Optional.of("Tuesday"), source.get(STRING_KEY));
+        assertTrue(metrics.getWatchRearms().getCount() > rearms);
+
+        // watch is resumed after the re-read
+        awaitWatches(2);
+        standIn.put("test/rest-config/string-property", "Wednesday");
+        assertEquals(STRING_KEY + "=Wednesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Optional.of("Wednesday"), source.get(STRING_KEY));
+    }
+
+    @Test
+    public void failedResyncIsRetried() throws InterruptedException {
+
+        Etcd3ConfigurationSource source = initSource();
+        source.watch(STRING_KEY);
+        awaitWatches(2);
+        long retries = metrics.getRetries().getCount();
+
+        standIn.pauseWatches();
+        standIn.put("test/rest-config/string-property", "Tuesday");
+        standIn.failRanges(2);
+        standIn.compact();
+
+        assertEquals(STRING_KEY + "=Tuesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(metrics.getRetries().getCount() >= retries + 2);
+
+        awaitWatches(2);
+        standIn.put("test/rest-config/string-property", "Wednesday");
+        assertEquals(STRING_KEY + "=Wednesday", changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void listAndMapQueriesAreReadFromServer() throws Exception {
+        assertListAndMapQueries(initSource());
+    }
+
+    @Test
+    public void listAndMapQueriesAreReadFromServerWithoutNamespaceWatch() throws Exception {
+
+        System.setProperty("kumuluzee.config.etcd3.preload", "true");
+        Etcd3ConfigurationSource source = initSource();
+
+        // key added after the preload is not watched, so the listing has to come from the server
+        standIn.put("test/rest-config/list/[3]", "item3");
+        assertEquals(Optional.of(4), source.getListSize(LIST_KEY));
+
+        assertListAndMapQueries(source);
+    }
+
+    @Test
+    public void listAndMapQueriesAreReadFromCache() throws Exception {
+
+        System.setProperty("kumuluzee.config.etcd3.preload", "true");
+        System.setProperty("kumuluzee.config.etcd3.namespace-watch", "true");
+        Etcd3ConfigurationSource source = initSource();
+        int rangeRequests = standIn.getRangeRequests();
+
+        assertEquals(Optional.of(3), source.getListSize(LIST_KEY));
+        assertEquals(Optional.of(Arrays.asList("first", "nested", "second")), sorted(source.getMapKeys(MAP_KEY)));
+        assertEquals(rangeRequests, standIn.getRangeRequests());
+
+        // namespace watch keeps the structure up to date
+        awaitWatches(1);
+        standIn.put("test/rest-config/list/[3]", "item3");
+        awaitValue(source, LIST_KEY + "[3]", "item3");
+        assertEquals(Optional.of(4), source.getListSize(LIST_KEY));
+
+        assertListAndMapQueries(source);
+    }
+
+    private void assertListAndMapQueries(Etcd3ConfigurationSource source) throws Exception {
+
+        int listSize = source.getListSize(LIST_KEY).orElse(0);
+        assertTrue(listSize >= 3);
+        assertEquals(Optional.of(listSize), source.getListSizeAsync(LIST_KEY).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), source.getListSize(MAP_KEY));
+        assertEquals(Optional.empty(), source.getListSize(MISSING_KEY));
+
+        List<String> mapKeys = Arrays.asList("first", "nested", "second");
+        assertEquals(Optional.of(mapKeys), sorted(source.getMapKeys(MAP_KEY)));
+        assertEquals(Optional.of(mapKeys),
+                sorted(source.getMapKeysAsync(MAP_KEY).get(TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+        assertEquals(Optional.empty(), source.getMapKeys(MISSING_KEY));
+        assertEquals(Optional.empty(), source.getMapKeysAsync(MISSING_KEY).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private Etcd3ConfigurationSource initSource() {
+
+        ConfigurationDispatcher dispatcher = new ConfigurationDispatcher();
+        dispatcher.subscribe((key, value) -> {
+            if (!key.equals("config_ordinal")) {
+                changes.add(key + "=" + value);
+            }
+        });
+
+        source = new Etcd3ConfigurationSource(new EeConfig.Builder().build());
+        source.init(dispatcher);
+
+        return source;
+    }
+
+    private void awaitWatches(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (standIn.getOpenWatches() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, standIn.getOpenWatches());
+    }
+
+    private static void awaitValue(Etcd3ConfigurationSource source, String key, String value)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!source.get(key).equals(Optional.of(value)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Optional.of(value), source.get(key));
+    }
+
+    private static Optional<List<String>> sorted(Optional<List<String>> keys) {
+        return keys.map(k -> {
+            List<String> sortedKeys = new ArrayList<>(k);
+            Collections.sort(sortedKeys);
+            return sortedKeys;
+        });
+    }
+}
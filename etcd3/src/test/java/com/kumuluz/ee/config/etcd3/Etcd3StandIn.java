@@ -0,0 +1,353 @@
+/*
+ *  Copyright (c) 2014-2020 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.kumuluz.ee.config.etcd3;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.api.DeleteRangeRequest;
+import io.etcd.jetcd.api.DeleteRangeResponse;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KVGrpc;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.api.PutRequest;
+import io.etcd.jetcd.api.PutResponse;
+import io.etcd.jetcd.api.RangeRequest;
+import io.etcd.jetcd.api.RangeResponse;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.api.WatchCreateRequest;
+import io.etcd.jetcd.api.WatchGrpc;
+import io.etcd.jetcd.api.WatchRequest;
+import io.etcd.jetcd.api.WatchResponse;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the etcd v3 KV and Watch gRPC services. Keeps an in-memory multi-version store with a
+ * revision counter and event history, so watches can start from past revisions. Tests can hold back watch events and
+ * compact the history, which cancels lagging watches the way etcd does, and can fail range requests.
+ *
+ * @since 1.4.0
+ */
+class Etcd3StandIn {
+
+    private final NavigableMap<String, KeyValue> store = new TreeMap<>();
+    private final List<Event> history = new ArrayList<>();
+    private long revision = 1;
+    private long compactRevision = 0;
+
+    private final List<WatchStream> watches = new CopyOnWriteArrayList<>();
+    private final AtomicLong watchIds = new AtomicLong();
+    private volatile boolean watchesPaused;
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger failingRanges = new AtomicInteger();
+
+    private Server server;
+
+    void start() throws IOException {
+        server = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(new KvService())
+                .addService(new WatchService())
+                .build()
+                .start();
+    }
+
+    void stop() {
+        server.shutdownNow();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getPort();
+    }
+
+    synchronized void put(String key, String value) {
+
+        revision++;
+
+        KeyValue previous = store.get(key);
+        KeyValue kv = KeyValue.newBuilder()
+                .setKey(ByteString.copyFromUtf8(key))
+                .setValue(ByteString.copyFromUtf8(value))
+                .setCreateRevision((previous != null) ? previous.getCreateRevision() : revision)
+                .setModRevision(revision)
+                .setVersion((previous != null) ? previous.getVersion() + 1 : 1)
+                .build();
+        store.put(key, kv);
+
+        addEvent(Event.newBuilder().setType(Event.EventType.PUT).setKv(kv).build());
+    }
+
+    synchronized void delete(String key) {
+
+        if (store.remove(key) == null) {
+            return;
+        }
+
+        revision++;
+        KeyValue kv = KeyValue.newBuilder().setKey(ByteString.copyFromUtf8(key)).setModRevision(revision).build();
+
+        addEvent(Event.newBuilder().setType(Event.EventType.DELETE).setKv(kv).build());
+    }
+
+    /**
+     * Holds back events of open watches until {@link #compact()} or {@link #resumeWatches()} is invoked.
+     */
+    void pauseWatches() {
+        watchesPaused = true;
+    }
+
+    synchronized void resumeWatches() {
+        watchesPaused = false;
+        watches.forEach(this::catchUp);
+    }
+
+    /**
+     * Compacts the history up to the current revision. Watches, which have not received all events yet, are
+     * cancelled with the compact revision.
+     */
+    synchronized void compact() {
+
+        compactRevision = revision;
+        history.clear();
+        watchesPaused = false;
+
+        for (WatchStream watch : watches) {
+            if (watch.nextRevision <= compactRevision) {
+                watches.remove(watch);
+                watch.observer.onNext(WatchResponse.newBuilder()
+                        .setHeader(header())
+                        .setWatchId(watch.id)
+                        .setCanceled(true)
+                        .setCompactRevision(compactRevision)
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Fails the given number of following range requests.
+     */
+    void failRanges(int count) {
+        failingRanges.set(count);
+    }
+
+    int getRangeRequests() {
+        return rangeRequests.get();
+    }
+
+    int getOpenWatches() {
+        return watches.size();
+    }
+
+    private void addEvent(Event event) {
+        history.add(event);
+        if (!watchesPaused) {
+            watches.forEach(this::catchUp);
+        }
+    }
+
+    /**
+     * Sends all events from the next revision of the watch onwards.
+     */
+    private void catchUp(WatchStream watch) {
+
+        List<Event> events = new ArrayList<>();
+        for (Event event : history) {
+            if (event.getKv().getModRevision() >= watch.nextRevision && watch.matches(event.getKv().getKey())) {
+                events.add(event);
+            }
+        }
+        watch.nextRevision = revision + 1;
+
+        if (!events.isEmpty()) {
+            watch.observer.onNext(WatchResponse.newBuilder()
+                    .setHeader(header())
+                    .setWatchId(watch.id)
+                    .addAllEvents(events)
+                    .build());
+        }
+    }
+
+    private ResponseHeader header() {
+        return ResponseHeader.newBuilder().setRevision(revision).build();
+    }
+
+    private Map<String, KeyValue> getRange(ByteString key, ByteString rangeEnd) {
+
+        String start = key.toStringUtf8();
+
+        if (rangeEnd.isEmpty()) {
+            KeyValue kv = store.get(start);
+            return (kv != null) ? Collections.singletonMap(start, kv) : Collections.emptyMap();
+        }
+
+        return store.subMap(start, rangeEnd.toStringUtf8());
+    }
+
+    private class KvService extends KVGrpc.KVImplBase {
+
+        @Override
+        public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+
+            rangeRequests.incrementAndGet();
+
+            if (failingRanges.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+                responseObserver.onError(Status.INTERNAL.withDescription("Range failed.").asException());
+                return;
+            }
+
+            RangeResponse.Builder response = RangeResponse.newBuilder();
+            synchronized (Etcd3StandIn.this) {
+                for (KeyValue kv : getRange(request.getKey(), request.getRangeEnd()).values()) {
+                    response.addKvs(request.getKeysOnly() ? kv.toBuilder().clearValue().build() : kv);
+                }
+                response.setCount(response.getKvsCount()).setHeader(header());
+            }
+
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+
+            PutResponse response;
+            synchronized (Etcd3StandIn.this) {
+                Etcd3StandIn.this.put(request.getKey().toStringUtf8(), request.getValue().toStringUtf8());
+                response = PutResponse.newBuilder().setHeader(header()).build();
+            }
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void deleteRange(DeleteRangeRequest request, StreamObserver<DeleteRangeResponse> responseObserver) {
+
+            DeleteRangeResponse response;
+            synchronized (Etcd3StandIn.this) {
+                List<String> keys = new ArrayList<>(getRange(request.getKey(), request.getRangeEnd()).keySet());
+                keys.forEach(Etcd3StandIn.this::delete);
+                response = DeleteRangeResponse.newBuilder().setHeader(header()).setDeleted(keys.size()).build();
+            }
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        }
+    }
+
+    private class WatchService extends WatchGrpc.WatchImplBase {
+
+        @Override
+        public StreamObserver<WatchRequest> watch(StreamObserver<WatchResponse> responseObserver) {
+            return new StreamObserver<WatchRequest>() {
+
+                @Override
+                public void onNext(WatchRequest request) {
+                    if (request.hasCreateRequest()) {
+                        create(request.getCreateRequest(), responseObserver);
+                    } else if (request.hasCancelRequest()) {
+                        watches.removeIf(watch -> watch.id == request.getCancelRequest().getWatchId());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    watches.removeIf(watch -> watch.observer == responseObserver);
+                }
+
+                @Override
+                public void onCompleted() {
+                    watches.removeIf(watch -> watch.observer == responseObserver);
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+
+        private void create(WatchCreateRequest request, StreamObserver<WatchResponse> responseObserver) {
+            synchronized (Etcd3StandIn.this) {
+
+                WatchStream watch = new WatchStream(watchIds.incrementAndGet(), request, responseObserver);
+                watch.nextRevision = (request.getStartRevision() > 0) ? request.getStartRevision() : revision + 1;
+
+                responseObserver.onNext(WatchResponse.newBuilder()
+                        .setHeader(header())
+                        .setWatchId(watch.id)
+                        .setCreated(true)
+                        .build());
+
+                if (watch.nextRevision <= compactRevision) {
+                    responseObserver.onNext(WatchResponse.newBuilder()
+                            .setHeader(header())
+                            .setWatchId(watch.id)
+                            .setCanceled(true)
+                            .setCompactRevision(compactRevision)
+                            .build());
+                    return;
+                }
+
+                watches.add(watch);
+                if (!watchesPaused) {
+                    catchUp(watch);
+                }
+            }
+        }
+    }
+
+    private static class WatchStream {
+
+        private final long id;
+        private final ByteString key;
+        private final ByteString rangeEnd;
+        private final StreamObserver<WatchResponse> observer;
+        private long nextRevision;
+
+        private WatchStream(long id, WatchCreateRequest request, StreamObserver<WatchResponse> observer) {
+            this.id = id;
+            this.key = request.getKey();
+            this.rangeEnd = request.getRangeEnd();
+            this.observer = observer;
+        }
+
+        private boolean matches(ByteString eventKey) {
+            if (rangeEnd.isEmpty()) {
+                return key.equals(eventKey);
+            }
+
+            String k = eventKey.toStringUtf8();
+            return k.compareTo(key.toStringUtf8()) >= 0 && k.compareTo(rangeEnd.toStringUtf8()) < 0;
+        }
+    }
+}
@@ -21,9 +21,21 @@
 package com.kumuluz.ee.config.zookeeper;
 
 import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.config.AsyncConfigurationSource;
+import com.kumuluz.ee.config.BatchConfigurationSource;
+import com.kumuluz.ee.config.BatchWriteResult;
+import com.kumuluz.ee.config.cache.ConfigurationCache;
+import com.kumuluz.ee.config.cache.SnapshotFile;
+import com.kumuluz.ee.config.metrics.ConfigMetrics;
+import com.kumuluz.ee.config.metrics.ConfigMetricsRegistry;
 import com.kumuluz.ee.config.utils.InitializationUtils;
+import com.kumuluz.ee.config.utils.KeyPathCache;
+import com.kumuluz.ee.config.utils.ListIndexes;
 import com.kumuluz.ee.config.utils.ParseUtils;
-import com.kumuluz.ee.configuration.ConfigurationSource;
+import com.kumuluz.ee.config.utils.RetryScheduler;
+import com.kumuluz.ee.config.utils.SingleFlight;
+import com.kumuluz.ee.config.watch.CoalescingConfigurationDispatcher;
+import com.kumuluz.ee.config.watch.WatchRegistry;
 import com.kumuluz.ee.configuration.utils.ConfigurationDecoderUtils;
 import com.kumuluz.ee.configuration.utils.ConfigurationDispatcher;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
@@ -33,11 +45,14 @@ import org.apache.zookeeper.data.Stat;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -48,16 +63,42 @@ import java.util.stream.Collectors;
  * @author Miha Jamsek
  * @since 1.3.0
  */
-public class ZookeeperConfigurationSource implements ConfigurationSource {
+public class ZookeeperConfigurationSource implements BatchConfigurationSource, AsyncConfigurationSource {
     
     private static final Logger log = Logger.getLogger(ZookeeperConfigurationSource.class.getName());
     
+    private static final int DEFAULT_ORDINAL = 110;
+    
+    private static final int SET_ATTEMPTS = 3;
+    
+    private static final int DEFAULT_SESSION_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    
     private String namespace;
+    private KeyPathCache keyPaths;
+    private volatile int ordinal = DEFAULT_ORDINAL;
     
     private ConfigurationDispatcher configurationDispatcher;
     private EeConfig eeConfig;
-    private ZooKeeper zooKeeper;
-    private CountDownLatch connectionSignal = new CountDownLatch(0);
+    private volatile ZooKeeper zooKeeper;
+    private final CountDownLatch connectionSignal = new CountDownLatch(1);
+    private String zookeeperHosts;
+    private int sessionTimeout;
+    private int startRetryDelay;
+    private int maxRetryDelay;
+    private final AtomicBoolean sessionRenewed = new AtomicBoolean(false);
+    private ConfigurationCache cache;
+    private boolean preload;
+    private final SingleFlight<String, Optional<String>> reads = new SingleFlight<>();
+    private final ConfigMetrics metrics = ConfigMetricsRegistry.getMetrics("zookeeper");
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    private WatchRegistry watchRegistry;
+    private final AtomicBoolean namespaceWatchStarted = new AtomicBoolean(false);
+    // keys watched individually, watches are placed again when a new session is established
+    private final Set<String> watchedKeys = ConcurrentHashMap.newKeySet();
+    // watches, which could not be placed because the connection was lost, are placed on reconnect
+    private final Set<String> pendingWatches = ConcurrentHashMap.newKeySet();
+    private volatile boolean namespaceWatchPending = false;
     
     public ZookeeperConfigurationSource(EeConfig eeConfig) {
         this.eeConfig = eeConfig;
@@ -65,29 +106,83 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
     
     @Override
     public void init(ConfigurationDispatcher configurationDispatcher) {
-        this.configurationDispatcher = configurationDispatcher;
         ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+        this.configurationDispatcher = CoalescingConfigurationDispatcher.wrap(configurationDispatcher,
+            InitializationUtils.getDispatchWindowMs(configurationUtil, "zookeeper"), metrics);
         
         // get namespace
         this.namespace = InitializationUtils.getNamespace(eeConfig, configurationUtil, "zookeeper");
+        this.keyPaths = KeyPathCache.forZookeeper(this.namespace);
         log.log(Level.INFO, "Using namespace: {0}", this.namespace);
         
+        // get retry delays
+        startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "zookeeper");
+        maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "zookeeper");
+        
         // get hosts
-        String zookeeperHosts = configurationUtil.get("kumuluzee.config.zookeeper.hosts").orElse(null);
+        zookeeperHosts = configurationUtil.get("kumuluzee.config.zookeeper.hosts").orElse(null);
         if (zookeeperHosts != null && !zookeeperHosts.isEmpty()) {
             
             verifyHosts(zookeeperHosts);
             
+            sessionTimeout = configurationUtil.getInteger("kumuluzee.config.zookeeper.session-timeout-ms")
+                .orElse(DEFAULT_SESSION_TIMEOUT_MS);
+            int connectTimeout = configurationUtil.getInteger("kumuluzee.config.zookeeper.connect-timeout-ms")
+                .orElse(DEFAULT_CONNECT_TIMEOUT_MS);
+            
             try {
-                this.zooKeeper = new ZooKeeper(zookeeperHosts, 2000, watchedEvent -> {
-                    if (watchedEvent.getState() == Watcher.Event.KeeperState.SyncConnected) {
-                        connectionSignal.countDown();
-                    }
-                });
-                connectionSignal.await();
-            } catch (InterruptedException | IOException e) {
+                this.zooKeeper = new ZooKeeper(zookeeperHosts, sessionTimeout, this::processConnectionEvent);
+            } catch (IOException e) {
                 log.severe("Error initializing Zookeeper! Host is unreacheable.");
             }
+            
+            preload = InitializationUtils.isPreloadEnabled(configurationUtil, "zookeeper");
+            boolean cacheLazy = InitializationUtils.isCacheLazy(configurationUtil, "zookeeper");
+            Optional<Path> snapshotPath =
+                InitializationUtils.getSnapshotFile(configurationUtil, "zookeeper", namespace);
+            SnapshotFile snapshot = null;
+            boolean restored = false;
+            if (zooKeeper != null && (preload || snapshotPath.isPresent() ||
+                InitializationUtils.isCacheEnabled(configurationUtil, "zookeeper"))) {
+                cache = new ConfigurationCache(metrics);
+                cache.setExpiration(InitializationUtils.getCacheTtlPolicy(configurationUtil, "zookeeper"),
+                    this::readAsync);
+                if (snapshotPath.isPresent()) {
+                    snapshot = new SnapshotFile(snapshotPath.get(), namespace, cache);
+                    restored = snapshot.restore();
+                    snapshot.persist();
+                }
+            }
+            
+            if (zooKeeper != null && !restored) {
+                // values are not available locally, the initial reads have to wait for the connection
+                awaitConnection(connectTimeout);
+                if (cache != null && (preload || snapshot != null || !cacheLazy)) {
+                    preload();
+                }
+            }
+            
+            if (InitializationUtils.isNamespaceWatchEnabled(configurationUtil, "zookeeper")) {
+                watchRegistry = new WatchRegistry();
+            }
+            
+            if (zooKeeper != null) {
+                // resolve ordinal once, the watch keeps it up to date
+                ordinal = getInteger(CONFIG_ORDINAL).orElse(DEFAULT_ORDINAL);
+                watch(CONFIG_ORDINAL);
+            }
+            
+            if (snapshot != null && !cache.isComplete()) {
+                // snapshot is written only after the whole namespace was read, keep reading it in background
+                snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+            }
+            
+            if (restored) {
+                // serve values from the snapshot, reconcile with ZooKeeper in background
+                snapshot.reconcile(this::preload, this::notifyChange, startRetryDelay, maxRetryDelay);
+                log.info("Zookeeper configuration source initialized from snapshot, reconciling with ZooKeeper in " +
+                    "background.");
+            }
         } else {
             log.severe("No Zookeeper server hosts provided. Specify hosts with configuration key" +
                 "kumuluzee.config.zookeeper.hosts in format " +
@@ -95,10 +190,58 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
         }
     }
     
+    /**
+     * Waits for the connection at most until the deadline, the client keeps connecting in background.
+     */
+    private void awaitConnection(int connectTimeout) {
+        try {
+            if (!connectionSignal.await(connectTimeout, TimeUnit.MILLISECONDS)) {
+                log.log(Level.WARNING, "Zookeeper not connected in {0} ms, connecting in background.",
+                    connectTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.severe("Interrupted while connecting to Zookeeper, connecting in background.");
+        }
+    }
+    
     @Override
     public Optional<String> get(String key) {
         
-        key = "/" + namespace + parseKeyNameForZookeeper(key);
+        if (cache != null) {
+            return cache.get(key, this::load);
+        }
+        
+        return load(key);
+    }
+    
+    /**
+     * Returns parsed value of the given key. With caching enabled, the parsed value is cached alongside the raw value.
+     */
+    private <T> Optional<T> getParsed(String key, Class<T> type, Function<Optional<String>, Optional<T>> parser) {
+        
+        if (cache != null) {
+            return cache.get(key, this::load, type, parser);
+        }
+        
+        return parser.apply(get(key));
+    }
+    
+    /**
+     * Reads the value from ZooKeeper. Concurrent reads of the same key share a single request.
+     */
+    private Optional<String> load(String key) {
+        return reads.execute(key, k -> metrics.timeRead(() -> getFromZookeeper(k)));
+    }
+    
+    private Optional<String> getFromZookeeper(String key) {
+        
+        key = keyPaths.getPath(key);
+        
+        if (!isConnected()) {
+            log.log(Level.WARNING, "Zookeeper not connected, cannot read key {0}.", key);
+            return Optional.empty();
+        }
         
         try {
             byte[] bytes = zooKeeper.getData(key, null, null);
@@ -117,36 +260,56 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
     
     @Override
     public Optional<Boolean> getBoolean(String key) {
-        return ParseUtils.parseOptionalStringToOptionalBoolean(get(key));
+        return getParsed(key, Boolean.class, ParseUtils::parseOptionalStringToOptionalBoolean);
     }
     
     @Override
     public Optional<Integer> getInteger(String key) {
-        return ParseUtils.parseOptionalStringToOptionalInteger(get(key));
+        return getParsed(key, Integer.class, ParseUtils::parseOptionalStringToOptionalInteger);
     }
     
     @Override
     public Optional<Long> getLong(String key) {
-        return ParseUtils.parseOptionalStringToOptionalLong(get(key));
+        return getParsed(key, Long.class, ParseUtils::parseOptionalStringToOptionalLong);
     }
     
     @Override
     public Optional<Double> getDouble(String key) {
-        return ParseUtils.parseOptionalStringToOptionalDouble(get(key));
+        return getParsed(key, Double.class, ParseUtils::parseOptionalStringToOptionalDouble);
     }
     
     @Override
     public Optional<Float> getFloat(String key) {
-        return ParseUtils.parseOptionalStringToOptionalFloat(get(key));
+        return getParsed(key, Float.class, ParseUtils::parseOptionalStringToOptionalFloat);
+    }
+    
+    /**
+     * Map keys and list sizes are answered from the index of cached keys only while the namespace watch keeps the
+     * whole cached namespace up to date, otherwise keys added on the server would be missing from the index.
+     */
+    private boolean isKeyIndexCurrent() {
+        return cache != null && cache.isComplete() && namespaceWatchStarted.get() && !namespaceWatchPending;
     }
     
     @Override
     public Optional<Integer> getListSize(String key) {
-        key = "/" + namespace + parseKeyNameForZookeeper(key);
+        
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return listSize;
+            }
+        }
+        
+        key = keyPaths.getPath(key);
+        
+        if (!isConnected()) {
+            log.log(Level.WARNING, "Zookeeper not connected, cannot read key {0}.", key);
+            return Optional.empty();
+        }
         
         try {
-            List<String> children = zooKeeper.getChildren(key, false);
-            return Optional.of(children.size());
+            return ListIndexes.getListSize(zooKeeper.getChildren(key, false), 0);
         } catch (KeeperException.NoNodeException e) {
             return Optional.empty();
         } catch (KeeperException | InterruptedException e) {
@@ -157,7 +320,20 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
     
     @Override
     public Optional<List<String>> getMapKeys(String key) {
-        key = "/" + namespace + parseKeyNameForZookeeper(key);
+        
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return mapKeys;
+            }
+        }
+        
+        key = keyPaths.getPath(key);
+        
+        if (!isConnected()) {
+            log.log(Level.WARNING, "Zookeeper not connected, cannot read key {0}.", key);
+            return Optional.empty();
+        }
         
         try {
             List<String> children = zooKeeper.getChildren(key, false);
@@ -170,11 +346,231 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
         }
     }
     
+    @Override
+    public CompletableFuture<Optional<String>> getAsync(String key) {
+        
+        if (cache != null) {
+            return cache.getAsync(key, this::loadAsync);
+        }
+        
+        return loadAsync(key);
+    }
+    
+    private CompletableFuture<Optional<String>> loadAsync(String key) {
+        // errors are logged and reported as absent values
+        return readAsync(key).exceptionally(e -> Optional.empty());
+    }
+    
+    /**
+     * Reads the value from ZooKeeper. Concurrent reads of the same key share a single request. Unlike
+     * {@link #loadAsync(String)}, the returned future is completed exceptionally if the value could not be read, so
+     * a failed refresh of an expired value keeps the cached value.
+     */
+    private CompletableFuture<Optional<String>> readAsync(String key) {
+        return reads.executeAsync(key, k -> metrics.timeReadAsync(() -> getFromZookeeperAsync(k)));
+    }
+    
+    private CompletableFuture<Optional<String>> getFromZookeeperAsync(String key) {
+        
+        CompletableFuture<Optional<String>> future = new CompletableFuture<>();
+        
+        if (!isConnected()) {
+            log.log(Level.WARNING, "Zookeeper not connected, cannot read key {0}.", key);
+            // reported as absent by getAsync, keeps the cached value when refreshing
+            future.completeExceptionally(KeeperException.create(KeeperException.Code.CONNECTIONLOSS));
+            return future;
+        }
+        
+        zooKeeper.getData(keyPaths.getPath(key), false, (rc, path, ctx, data, stat) -> {
+            KeeperException.Code code = KeeperException.Code.get(rc);
+            if (code == KeeperException.Code.OK) {
+                future.complete(Optional.ofNullable(data).map(String::new));
+            } else if (code == KeeperException.Code.NONODE) {
+                future.complete(Optional.empty());
+            } else {
+                log.log(Level.SEVERE, "Error retrieving key {0}!", path);
+                future.completeExceptionally(KeeperException.create(code, path));
+            }
+        }, null);
+        
+        return future;
+    }
+    
+    @Override
+    public CompletableFuture<Optional<Integer>> getListSizeAsync(String key) {
+        
+        if (isKeyIndexCurrent()) {
+            Optional<Integer> listSize = cache.getListSize(key);
+            if (listSize.isPresent()) {
+                return CompletableFuture.completedFuture(listSize);
+            }
+        }
+        
+        return getChildrenAsync(key).thenApply(children -> children.flatMap(c -> ListIndexes.getListSize(c, 0)));
+    }
+    
+    @Override
+    public CompletableFuture<Optional<List<String>>> getMapKeysAsync(String key) {
+        
+        if (isKeyIndexCurrent()) {
+            Optional<List<String>> mapKeys = cache.getMapKeys(key);
+            if (mapKeys.isPresent()) {
+                return CompletableFuture.completedFuture(mapKeys);
+            }
+        }
+        
+        return getChildrenAsync(key);
+    }
+    
+    private CompletableFuture<Optional<List<String>>> getChildrenAsync(String key) {
+        
+        if (!isConnected()) {
+            log.log(Level.WARNING, "Zookeeper not connected, cannot read key {0}.", key);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        
+        CompletableFuture<Optional<List<String>>> future = new CompletableFuture<>();
+        
+        zooKeeper.getChildren(keyPaths.getPath(key), false, (rc, path, ctx, children) -> {
+            KeeperException.Code code = KeeperException.Code.get(rc);
+            if (code != KeeperException.Code.OK && code != KeeperException.Code.NONODE) {
+                log.log(Level.SEVERE, "Error retrieving key {0}!", path);
+            }
+            future.complete((code == KeeperException.Code.OK) ? Optional.of(children) : Optional.empty());
+        }, null);
+        
+        return future;
+    }
+    
     @Override
     public void watch(String key) {
-        String fullKey = "/" + namespace + parseKeyNameForZookeeper(key);
+        String fullKey = keyPaths.getPath(key);
+        
+        if (zooKeeper != null && watchRegistry != null) {
+            if (watchRegistry.register(key)) {
+                log.log(Level.INFO, "Registering key {0} with namespace watch.", fullKey);
+            }
+            if (namespaceWatchStarted.compareAndSet(false, true)) {
+                metrics.getActiveWatches().inc();
+                watchNamespace();
+            }
+            return;
+        }
+        
+        if (zooKeeper != null && watchedKeys.add(key)) {
+            metrics.getActiveWatches().inc();
+            watchKey(key);
+        }
+    }
+    
+    /**
+     * Handles connection state changes of the session. ZooKeeper client reconnects within the session by itself and
+     * keeps its watches. Watches, which could not be placed in the meantime, are placed on reconnect. When the session
+     * expires, all of its watches are lost, so a new session is established, cached values are read again and all
+     * watches are placed again.
+     */
+    private void processConnectionEvent(WatchedEvent event) {
+        if (event.getType() != Watcher.Event.EventType.None) {
+            return;
+        }
+        
+        switch (event.getState()) {
+            case SyncConnected:
+                // every connection after the first one is a reconnect after connection loss
+                if (connected.getAndSet(true)) {
+                    metrics.getReconnects().inc();
+                }
+                connectionSignal.countDown();
+                if (sessionRenewed.compareAndSet(true, false)) {
+                    onSessionRenewed();
+                }
+                placePendingWatches();
+                break;
+            case Disconnected:
+                log.warning("Disconnected from Zookeeper, reconnecting.");
+                break;
+            case Expired:
+                log.warning("Zookeeper session expired, establishing a new session.");
+                renewSession(startRetryDelay);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Checks if the session is connected. Requests are not sent while disconnected, so callers do not wait for the
+     * connection attempt to time out.
+     */
+    private boolean isConnected() {
+        ZooKeeper current = zooKeeper;
+        return current != null && current.getState().isConnected();
+    }
+    
+    private void renewSession(int retryDelay) {
+        try {
+            sessionRenewed.set(true);
+            zooKeeper = new ZooKeeper(zookeeperHosts, sessionTimeout, this::processConnectionEvent);
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error establishing Zookeeper session. Message: {0}", e.getMessage());
+            metrics.getRetries().inc();
+            RetryScheduler.schedule(() -> renewSession(RetryScheduler.getNextDelay(retryDelay, maxRetryDelay)),
+                RetryScheduler.getJitteredDelay(retryDelay));
+        }
+    }
+    
+    private void onSessionRenewed() {
+        log.info("Zookeeper session established, re-reading values and placing watches.");
+        
+        if (cache != null) {
+            if (cache.isComplete()) {
+                Set<String> changedKeys = preload();
+                if (changedKeys != null) {
+                    Map<String, String> values = cache.getValues();
+                    for (String changedKey : changedKeys) {
+                        notifyChange(changedKey, values.get(changedKey));
+                    }
+                }
+            } else {
+                // changes made while the session was expired were missed, values are read again when needed
+                cache.update(null, Collections.emptyMap());
+            }
+        }
+        
+        pendingWatches.addAll(watchedKeys);
+        if (namespaceWatchStarted.get()) {
+            namespaceWatchPending = true;
+        }
+    }
+    
+    private void placePendingWatches() {
+        if (namespaceWatchPending) {
+            namespaceWatchPending = false;
+            metrics.getWatchRearms().inc();
+            watchNamespace();
+        }
+        
+        for (String key : pendingWatches) {
+            pendingWatches.remove(key);
+            metrics.getWatchRearms().inc();
+            watchKey(key);
+        }
+    }
+    
+    /**
+     * Reads the value of the given key and places one-time watches on it. Watches are re-armed when triggered.
+     */
+    private void watchKey(String key) {
+        String fullKey = keyPaths.getPath(key);
         
         if (zooKeeper != null) {
+            if (!isConnected()) {
+                log.log(Level.WARNING, "Zookeeper not connected, watch for key {0} will be placed on reconnect.",
+                    key);
+                pendingWatches.add(key);
+                return;
+            }
+            
             log.log(Level.INFO, "Initializing watch for key: {0}", fullKey);
             try {
                 
@@ -182,7 +578,8 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
                 Stat nodeStatus = zooKeeper.exists(fullKey, watchedEvent -> {
                     // node was created later
                     if (watchedEvent.getType() == Watcher.Event.EventType.NodeCreated) {
-                        watch(key);
+                        metrics.getWatchRearms().inc();
+                        watchKey(key);
                     }
                 });
                 if (nodeStatus != null) {
@@ -192,33 +589,43 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
                             case NodeCreated:
                             case NodeDeleted:
                             case NodeChildrenChanged:
-                                watch(key);
+                                metrics.getWatchRearms().inc();
+                                watchKey(key);
                         }
                     }, null);
                     newValue = new String(newValueBytes);
                 }
                 
                 log.log(Level.INFO, "Value changed. Key: {0} New value: {1}",
-                    new String[]{parseKeyNameFromZookeeper(fullKey), newValue});
+                    new String[]{keyPaths.getKey(fullKey), newValue});
+                
+                if (cache != null) {
+                    cache.put(key, newValue);
+                }
+                updateOrdinal(key, newValue);
                 
                 if (configurationDispatcher != null) {
                     if (newValue != null) {
                         configurationDispatcher.notifyChange(
-                            parseKeyNameFromZookeeper(fullKey),
+                            keyPaths.getKey(fullKey),
                             ConfigurationDecoderUtils.decodeConfigValueIfEncoded(
-                                parseKeyNameFromZookeeper(fullKey),
+                                keyPaths.getKey(fullKey),
                                 newValue
                             )
                         );
                     } else {
                         ConfigurationUtil
                             .getInstance()
-                            .get(parseKeyNameFromZookeeper(fullKey))
+                            .get(keyPaths.getKey(fullKey))
                             .ifPresent(fallbackConfig -> configurationDispatcher.notifyChange(key, fallbackConfig));
                     }
                 }
             } catch (KeeperException.NoNodeException ignored) {
                 // ignore non-existing nodes
+            } catch (KeeperException.ConnectionLossException | KeeperException.SessionExpiredException e) {
+                log.log(Level.WARNING, "Zookeeper not connected, watch for key {0} will be placed on reconnect.",
+                    key);
+                pendingWatches.add(key);
             } catch (InterruptedException e) {
                 log.log(Level.SEVERE, "Transaction for watch {0} was interrupted!", key);
             } catch (KeeperException e) {
@@ -227,33 +634,184 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
         }
     }
     
+    /**
+     * Places a single persistent recursive watch on the namespace. Persistent watches are not removed when triggered,
+     * so no re-arming is needed and no change is missed in between. Changes are routed to keys in the watch registry.
+     */
+    private void watchNamespace() {
+        String namespacePath = "/" + namespace;
+        
+        if (!isConnected()) {
+            log.warning("Zookeeper not connected, namespace watch will be placed on reconnect.");
+            namespaceWatchPending = true;
+            return;
+        }
+        
+        log.log(Level.INFO, "Initializing persistent recursive watch for namespace: {0}", namespacePath);
+        try {
+            zooKeeper.addWatch(namespacePath, this::processNamespaceEvent, AddWatchMode.PERSISTENT_RECURSIVE);
+        } catch (KeeperException.ConnectionLossException | KeeperException.SessionExpiredException e) {
+            log.warning("Zookeeper not connected, namespace watch will be placed on reconnect.");
+            namespaceWatchPending = true;
+        } catch (InterruptedException e) {
+            log.log(Level.SEVERE, "Transaction for namespace watch {0} was interrupted!", namespacePath);
+            namespaceWatchStarted.set(false);
+            metrics.getActiveWatches().dec();
+        } catch (KeeperException e) {
+            log.log(Level.SEVERE, "Unknown Zookeeper exception. Message: {0}", e.getMessage());
+            namespaceWatchStarted.set(false);
+            metrics.getActiveWatches().dec();
+        }
+    }
+    
+    private void processNamespaceEvent(WatchedEvent event) {
+        String path = event.getPath();
+        Watcher.Event.EventType type = event.getType();
+        
+        // namespace node itself has no key, connection state events have no path
+        if (path == null || path.length() <= namespace.length() + 1) {
+            return;
+        }
+        
+        if (type != Watcher.Event.EventType.NodeCreated && type != Watcher.Event.EventType.NodeDataChanged &&
+            type != Watcher.Event.EventType.NodeDeleted) {
+            return;
+        }
+        
+        String changedKey = keyPaths.getKey(path);
+        String newValue = null;
+        
+        if (type != Watcher.Event.EventType.NodeDeleted) {
+            try {
+                byte[] bytes = zooKeeper.getData(path, false, null);
+                if (bytes != null) {
+                    newValue = new String(bytes);
+                }
+            } catch (KeeperException.NoNodeException ignored) {
+                // node was deleted in the meantime, deletion event follows
+                return;
+            } catch (InterruptedException e) {
+                log.log(Level.SEVERE, "Transaction for watch {0} was interrupted!", changedKey);
+                return;
+            } catch (KeeperException e) {
+                log.log(Level.SEVERE, "Unknown Zookeeper exception. Message: {0}", e.getMessage());
+                return;
+            }
+        }
+        
+        if (cache != null) {
+            if (type == Watcher.Event.EventType.NodeDeleted) {
+                cache.remove(changedKey);
+            } else if (newValue != null) {
+                cache.put(changedKey, newValue);
+            }
+        }
+        
+        for (String key : watchRegistry.getAffectedKeys(changedKey)) {
+            String value = key.equals(changedKey) ? newValue : null;
+            log.log(Level.INFO, "Value changed. Key: {0} New value: {1}", new String[]{key, value});
+            notifyChange(key, value);
+        }
+    }
+    
+    /**
+     * Notifies dispatcher about a changed value. If value was deleted, value from other configuration sources is used.
+     */
+    private void notifyChange(String key, String value) {
+        updateOrdinal(key, value);
+        
+        if (configurationDispatcher == null) {
+            return;
+        }
+        
+        if (value != null) {
+            configurationDispatcher.notifyChange(key,
+                ConfigurationDecoderUtils.decodeConfigValueIfEncoded(key, value));
+        } else {
+            ConfigurationUtil.getInstance().get(key)
+                .ifPresent(fallbackConfig -> configurationDispatcher.notifyChange(key, fallbackConfig));
+        }
+    }
+    
     @Override
     public void set(String key, String value) {
-        key = "/" + namespace + parseKeyNameForZookeeper(key);
+        BatchWriteResult result = set(Collections.singletonMap(key, value));
         
-        if (zooKeeper != null) {
+        if (!result.isSuccessful()) {
+            log.severe("Cannot set key: " + result.getFailedKeys().get(key));
+        }
+    }
+    
+    /**
+     * Writes all values with two requests. A read-only multi reads all leaf and parent nodes to find which of them
+     * exist, then a single multi transaction creates missing parents and creates or updates the leaves. If nodes are
+     * created or deleted concurrently between the two requests, the transaction fails atomically and is retried.
+     */
+    @Override
+    public BatchWriteResult set(Map<String, String> values) {
+        
+        if (zooKeeper == null) {
+            return BatchWriteResult.failed(values.keySet(), "Zookeeper client not initialized.", 0);
+        }
+        
+        Map<String, byte[]> leaves = new HashMap<>();
+        // sorted set orders parents before their children
+        SortedSet<String> paths = new TreeSet<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String path = keyPaths.getPath(entry.getKey());
+            leaves.put(path, entry.getValue().getBytes());
+            paths.addAll(getNodePaths(path));
+        }
+        
+        int requests = 0;
+        String error = null;
+        
+        for (int attempt = 0; attempt < SET_ATTEMPTS; attempt++) {
             try {
-                List<String> pathParts = getNodePaths(key);
-                for (int i = 0; i < pathParts.size(); i++) {
-                    String part = pathParts.get(i);
-                    // Recursively create path to given node
-                    if (i != pathParts.size() - 1) {
-                        if (zooKeeper.exists(part, false) == null) {
-                            zooKeeper.create(part, null,
-                                ZooDefs.Ids.OPEN_ACL_UNSAFE,
-                                CreateMode.PERSISTENT);
-                        }
-                    } else {
-                        // if last node, then create data node
-                        zooKeeper.create(part, value.getBytes(),
-                            ZooDefs.Ids.OPEN_ACL_UNSAFE,
-                            CreateMode.PERSISTENT);
+                List<Op> reads = new ArrayList<>(paths.size());
+                for (String path : paths) {
+                    reads.add(Op.getData(path));
+                }
+                
+                List<OpResult> readResults = zooKeeper.multi(reads);
+                requests++;
+                
+                List<Op> writes = new ArrayList<>(paths.size());
+                Iterator<OpResult> readResultIterator = readResults.iterator();
+                for (String path : paths) {
+                    boolean exists = readResultIterator.next() instanceof OpResult.GetDataResult;
+                    byte[] leafValue = leaves.get(path);
+                    
+                    if (leafValue != null) {
+                        writes.add(exists ?
+                            Op.setData(path, leafValue, -1) :
+                            Op.create(path, leafValue, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+                    } else if (!exists) {
+                        writes.add(Op.create(path, null, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
                     }
                 }
-            } catch (KeeperException | InterruptedException e) {
-                log.severe("Cannot set key: " + e);
+                
+                zooKeeper.multi(writes);
+                requests++;
+                
+                return new BatchWriteResult(values.keySet(), Collections.emptyMap(), requests);
+                
+            } catch (KeeperException.NodeExistsException | KeeperException.NoNodeException e) {
+                // namespace changed between reading and writing, retry
+                requests++;
+                error = e.toString();
+            } catch (KeeperException e) {
+                requests++;
+                error = e.toString();
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e.toString();
+                break;
             }
         }
+        
+        return BatchWriteResult.failed(values.keySet(), error, requests);
     }
     
     @Override
@@ -278,42 +836,78 @@ public class ZookeeperConfigurationSource implements ConfigurationSource {
     
     @Override
     public Integer getOrdinal() {
-        return getInteger(CONFIG_ORDINAL).orElse(110);
+        return ordinal;
     }
     
-    private String parseKeyNameFromZookeeper(String key) {
-        return key.substring(this.namespace.length() + 2).replace("/", ".").replace(".[", "[");
+    /**
+     * Updates the cached ordinal, if the changed key is the ordinal key. Removed ordinal falls back to the default.
+     */
+    private void updateOrdinal(String key, String value) {
+        if (CONFIG_ORDINAL.equals(key)) {
+            ordinal = ParseUtils.parseOptionalStringToOptionalInteger(Optional.ofNullable(value))
+                    .orElse(DEFAULT_ORDINAL);
+        }
     }
     
     /**
-     * Parses Kumuluzee key to Zookeeper key
+     * Walks the whole namespace and stores all node values in the cache.
      *
-     * @param key dot-separated string: <code>val1.val2.val3</code>
-     * @return slash-separated string: <code>/val1/val2/val3</code>
+     * @return keys, which were changed or removed, or null if the namespace could not be read
      */
-    private String parseKeyNameForZookeeper(String key) {
-        key = key.replace("[", ".[");
-        String[] splittedKey = key.split("\\.");
+    private Set<String> preload() {
+        if (!isConnected()) {
+            log.warning("Zookeeper not connected, cannot load namespace into cache.");
+            return null;
+        }
+        
+        long start = System.currentTimeMillis();
+        Map<String, String> values = new HashMap<>();
         
-        StringBuilder parsedKey = new StringBuilder();
-        for (String s : splittedKey) {
-            parsedKey.append("/").append(s);
+        try {
+            collectValues("/" + namespace, values);
+        } catch (KeeperException.NoNodeException ignored) {
+            // namespace does not exist yet
+        } catch (KeeperException | InterruptedException e) {
+            log.log(Level.SEVERE, "Cannot load namespace into cache: {0}", e.getMessage());
+            return null;
+        }
+        
+        Set<String> changedKeys = cache.load(values);
+        if (preload) {
+            log.log(Level.INFO, "Preloaded {0} configuration values in {1} ms.",
+                new Object[]{values.size(), System.currentTimeMillis() - start});
+        } else {
+            log.log(Level.INFO, "Loaded {0} configuration values into cache.", values.size());
         }
         
-        return parsedKey.toString();
+        return changedKeys;
+    }
+    
+    private void collectValues(String path, Map<String, String> values) throws KeeperException, InterruptedException {
+        for (String child : zooKeeper.getChildren(path, false)) {
+            String childPath = path + "/" + child;
+            try {
+                byte[] bytes = zooKeeper.getData(childPath, false, null);
+                if (bytes != null) {
+                    values.put(keyPaths.getKey(childPath), new String(bytes));
+                }
+                collectValues(childPath, values);
+            } catch (KeeperException.NoNodeException ignored) {
+                // node was deleted while walking the namespace
+            }
+        }
     }
     
     /**
      * Returns cumulative list of node paths
      *
-     * @param key dot-separated string: <code>val1.val2.val3</code>
+     * @param path Zookeeper path: <code>/val1/val2/val3</code>
      * @return list of cumulative node paths: <code>[/val1, /val1/val2, /val1/val2/val3]</code>
      */
-    private List<String> getNodePaths(String key) {
+    private List<String> getNodePaths(String path) {
         List<String> listOfNodePaths = new ArrayList<>();
-        String zookeeperKey = parseKeyNameForZookeeper(key);
         
-        List<String> partsList = Arrays.stream(zookeeperKey.split("/"))
+        List<String> partsList = Arrays.stream(path.split("/"))
             .filter(part -> !part.isEmpty())
             .collect(Collectors.toList());
         